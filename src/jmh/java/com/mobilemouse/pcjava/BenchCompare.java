@@ -0,0 +1,112 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 对比两份 JMH JSON 结果（-rf json），列出吞吐下降或分配率上升的基准。
+ * 只有变化超过阈值、且两次结果的置信区间（score ± scoreError）不重叠时才算回退；
+ * 超过阈值但区间重叠的只标注“区间重叠”，说明误差太大、无法判定。
+ * 用法：java -cp target/benchmarks.jar com.mobilemouse.pcjava.BenchCompare src/jmh/baseline.json jmh-result.json [阈值%]
+ * 存在回退时退出码为 1。
+ */
+public final class BenchCompare {
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("用法: BenchCompare <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> base = load(args[0]);
+        Map<String, Result> cur = load(args[1]);
+        int regressions = 0;
+        System.out.printf("%-70s %24s %24s %8s %12s %12s%n", "benchmark", "base ops/s", "cur ops/s", "Δ%", "base B/op", "cur B/op");
+        for (Map.Entry<String, Result> e : cur.entrySet()) {
+            Result b = base.get(e.getKey());
+            Result c = e.getValue();
+            if (b == null) {
+                System.out.printf("%-70s %24s %24s %8s %12s %12.1f%n", e.getKey(), "-", c.score(), "new", "-", c.alloc);
+                continue;
+            }
+            double delta = b.ops == 0 ? 0 : (c.ops - b.ops) * 100.0 / b.ops;
+            // 吞吐：当前区间上界仍低于基线区间下界
+            boolean slower = delta < -threshold && c.ops + c.opsError < b.ops - b.opsError;
+            boolean slowerNoise = delta < -threshold && !slower;
+            // 分配：每次操作多出 16 字节以上，且当前区间下界仍高于基线区间上界
+            boolean moreAlloc = c.alloc > b.alloc + 16 && c.alloc > b.alloc * (1 + threshold / 100.0);
+            boolean allocs = moreAlloc && c.alloc - c.allocError > b.alloc + b.allocError;
+            boolean allocNoise = moreAlloc && !allocs;
+            if (slower || allocs) regressions++;
+            String note = slower || allocs ? "  <-- 回退" : slowerNoise || allocNoise ? "  (区间重叠)" : "";
+            System.out.printf("%-70s %24s %24s %+7.1f%% %12.1f %12.1f%s%n", e.getKey(), b.score(), c.score(), delta,
+                    b.alloc, c.alloc, note);
+        }
+        System.out.println(regressions == 0 ? "未发现回退" : ("发现 " + regressions + " 项回退"));
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /** 一个基准（含参数）的吞吐与每次操作分配字节，各带 99.9% 置信区间的半宽。 */
+    private static final class Result {
+        final double ops;
+        final double opsError;
+        final double alloc;
+        final double allocError;
+
+        Result(double ops, double opsError, double alloc, double allocError) {
+            this.ops = ops;
+            this.opsError = opsError;
+            this.alloc = alloc;
+            this.allocError = allocError;
+        }
+
+        String score() {
+            return String.format("%.0f ± %.0f", ops, opsError);
+        }
+    }
+
+    /** 基准名（含参数）→ 结果。 */
+    private static Map<String, Result> load(String path) throws Exception {
+        Map<String, Result> out = new LinkedHashMap<>();
+        try (Reader r = new InputStreamReader(Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8)) {
+            JsonArray arr = JsonParser.parseReader(r).getAsJsonArray();
+            for (JsonElement el : arr) {
+                JsonObject o = el.getAsJsonObject();
+                StringBuilder name = new StringBuilder(o.get("benchmark").getAsString());
+                if (o.has("params")) {
+                    for (Map.Entry<String, JsonElement> p : o.getAsJsonObject("params").entrySet()) {
+                        name.append(' ').append(p.getKey()).append('=').append(p.getValue().getAsString());
+                    }
+                }
+                JsonObject primary = o.getAsJsonObject("primaryMetric");
+                double alloc = 0;
+                double allocError = 0;
+                JsonObject sec = o.has("secondaryMetrics") ? o.getAsJsonObject("secondaryMetrics") : null;
+                if (sec != null && sec.has(ALLOC)) {
+                    alloc = sec.getAsJsonObject(ALLOC).get("score").getAsDouble();
+                    allocError = error(sec.getAsJsonObject(ALLOC));
+                }
+                out.put(name.toString(), new Result(primary.get("score").getAsDouble(), error(primary), alloc, allocError));
+            }
+        }
+        return out;
+    }
+
+    /** scoreError；只有一次测量迭代时 JMH 写出 NaN，按 0 处理。 */
+    private static double error(JsonObject metric) {
+        if (!metric.has("scoreError")) return 0;
+        double e = metric.get("scoreError").getAsDouble();
+        return Double.isNaN(e) ? 0 : e;
+    }
+}
@@ -0,0 +1,90 @@
+package com.mobilemouse.pcjava;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+import javax.net.ssl.SSLSession;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * 基准共用的样例消息与桩对象。
+ */
+final class BenchSupport {
+    private BenchSupport() {}
+
+    /** 每种协议消息的典型报文，键为 type。 */
+    static String sample(String type) {
+        switch (type) {
+            case "hello": return "{\"type\":\"hello\",\"clientVersion\":\"1.0.0\"}";
+            case "ping": return "{\"type\":\"ping\",\"ts\":1712345678901}";
+            case "touchstart": return "{\"type\":\"touchstart\",\"ts\":1712345678901}";
+            case "touchmove": return "{\"type\":\"touchmove\",\"dx\":1.5,\"dy\":-0.75,\"ts\":1712345678901}";
+            case "touchend": return "{\"type\":\"touchend\",\"vx\":120.5,\"vy\":-30.25}";
+            case "tap": return "{\"type\":\"tap\"}";
+            case "doubletap": return "{\"type\":\"doubletap\"}";
+            case "longpress": return "{\"type\":\"longpress\"}";
+            case "pinch": return "{\"type\":\"pinch\",\"dscale\":0.12}";
+            case "rotate": return "{\"type\":\"rotate\",\"dr\":0.2}";
+            case "mouse_move": return "{\"type\":\"mouse_move\",\"dx\":3.5,\"dy\":-2.25}";
+            case "mouse_button": return "{\"type\":\"mouse_button\",\"button\":\"left\",\"action\":\"click\"}";
+            case "scroll": return "{\"type\":\"scroll\",\"dx\":0,\"dy\":3}";
+            case "roll": return "{\"type\":\"roll\",\"ds\":0.1,\"dy\":0.3}";
+            case "drag": return "{\"type\":\"drag\",\"dx\":2,\"dy\":1}";
+            case "key_event": return "{\"type\":\"key_event\",\"key\":\"a\",\"action\":\"down\",\"mod\":{\"ctrl\":true}}";
+            case "text_input": return "{\"type\":\"text_input\",\"text\":\"hello\"}";
+            case "batch": return "{\"type\":\"batch\",\"ts\":1712345678901,\"events\":["
+                    + "{\"type\":\"touchmove\",\"dx\":1.5,\"dy\":-0.75,\"dt\":0},"
+                    + "{\"type\":\"touchmove\",\"dx\":1.25,\"dy\":-0.5,\"dt\":4},"
+                    + "{\"type\":\"touchmove\",\"dx\":1,\"dy\":-0.5,\"dt\":8},"
+                    + "{\"type\":\"touchmove\",\"dx\":0.75,\"dy\":-0.25,\"dt\":12}]}";
+            default: throw new IllegalArgumentException(type);
+        }
+    }
+
+    /** 不注入任何系统事件的注入器。 */
+    static InputInjector noopInjector() {
+        AppConfig config = new AppConfig();
+        config.backend = "recording";
+        config.recordingCapacity = 0;
+        config.displayPollMs = 0;
+        return new InputInjector(config, new RecordingBackend(0));
+    }
+
+    /** 丢弃所有发送内容的 WebSocket 桩。 */
+    static final class NullWebSocket implements WebSocket {
+        private Object attachment;
+
+        @Override public void close(int code, String message) {}
+        @Override public void close(int code) {}
+        @Override public void close() {}
+        @Override public void closeConnection(int code, String message) {}
+        @Override public void send(String text) {}
+        @Override public void send(ByteBuffer bytes) {}
+        @Override public void send(byte[] bytes) {}
+        @Override public void sendFrame(Framedata framedata) {}
+        @Override public void sendFrame(Collection<Framedata> frames) {}
+        @Override public void sendPing() {}
+        @Override public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {}
+        @Override public boolean hasBufferedData() { return false; }
+        @Override public InetSocketAddress getRemoteSocketAddress() { return null; }
+        @Override public InetSocketAddress getLocalSocketAddress() { return null; }
+        @Override public boolean isOpen() { return true; }
+        @Override public boolean isClosing() { return false; }
+        @Override public boolean isFlushAndClose() { return false; }
+        @Override public boolean isClosed() { return false; }
+        @Override public Draft getDraft() { return null; }
+        @Override public ReadyState getReadyState() { return ReadyState.OPEN; }
+        @Override public String getResourceDescriptor() { return "/ws"; }
+        @Override @SuppressWarnings("unchecked") public <T> T getAttachment() { return (T)attachment; }
+        @Override public <T> void setAttachment(T attachment) { this.attachment = attachment; }
+        @Override public boolean hasSSLSupport() { return false; }
+        @Override public SSLSession getSSLSession() { return null; }
+        @Override public IProtocol getProtocol() { return null; }
+    }
+}
@@ -0,0 +1,53 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各消息类型的 JSON 解码：JsonParser 树解析 vs 流式解码（不支持时回退树解析）。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+    @Param({"hello", "ping", "touchstart", "touchmove", "touchend", "tap", "doubletap", "longpress", "pinch",
+            "rotate", "mouse_move", "mouse_button", "scroll", "roll", "drag", "key_event", "text_input", "batch"})
+    public String type;
+
+    private String message;
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final InboundMessage msg = new InboundMessage();
+    private final InboundMessage[] events = {
+            new InboundMessage(), new InboundMessage(), new InboundMessage(), new InboundMessage()
+    };
+
+    @Setup
+    public void setup() {
+        message = BenchSupport.sample(type);
+    }
+
+    @Benchmark
+    public void tree(Blackhole bh) {
+        JsonObject root = JsonParser.parseString(message).getAsJsonObject();
+        bh.consume(root.has("type") ? root.get("type").getAsString() : "");
+        bh.consume(root.has("dx") ? root.get("dx").getAsDouble() : 0.0);
+        bh.consume(root.has("dy") ? root.get("dy").getAsDouble() : 0.0);
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        if (!decoder.decode(message, msg, events)) {
+            msg.fromTree(JsonParser.parseString(message).getAsJsonObject());
+        }
+        bh.consume(msg.type);
+        bh.consume(msg.dx);
+        bh.consume(msg.dy);
+    }
+}
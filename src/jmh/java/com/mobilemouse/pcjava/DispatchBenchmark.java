@@ -0,0 +1,36 @@
+package com.mobilemouse.pcjava;
+
+import org.java_websocket.WebSocket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 onMessage 路径（解码 + 分发 + 入队），注入端为不做任何事的录制后端。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+    @Param({"hello", "ping", "touchstart", "touchmove", "touchend", "tap", "doubletap", "longpress", "pinch",
+            "rotate", "mouse_move", "mouse_button", "scroll", "roll", "drag", "key_event", "text_input"})
+    public String type;
+
+    private String message;
+    private MobileMouseServer server;
+    private final WebSocket conn = new BenchSupport.NullWebSocket();
+
+    @Setup
+    public void setup() {
+        message = BenchSupport.sample(type);
+        server = new MobileMouseServer(0, BenchSupport.noopInjector());
+    }
+
+    @Benchmark
+    public void onMessage() {
+        server.onMessage(conn, message);
+    }
+}
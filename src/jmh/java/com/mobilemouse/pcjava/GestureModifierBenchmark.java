@@ -0,0 +1,40 @@
+package com.mobilemouse.pcjava;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 手势帧的修饰键 + 滚轮注入（录制后端，默认 modifierLingerMs），反映每帧需要的后端调用数：
+ * 连续的 pinch/rotate 帧修饰键保持按住；双指滚动在普通滚动与 Shift 滚动之间切换，每次都要抬起/按下。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GestureModifierBenchmark {
+    private InputInjector injector;
+
+    @Setup
+    public void setup() {
+        injector = BenchSupport.noopInjector();
+    }
+
+    @Benchmark
+    public void pinch() {
+        injector.modifiedScroll(InputCommand.MOD_CTRL, 0, -1);
+    }
+
+    @Benchmark
+    public void rotate() {
+        injector.modifiedScroll(InputCommand.MOD_SHIFT, 0, 2);
+    }
+
+    @Benchmark
+    public void twoFingerScroll() {
+        injector.scroll(0, 3);
+        injector.modifiedScroll(InputCommand.MOD_SHIFT, 0, 1);
+    }
+}
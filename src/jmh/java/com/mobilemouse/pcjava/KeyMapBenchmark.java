@@ -0,0 +1,24 @@
+package com.mobilemouse.pcjava;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyMap.toKeyCode 的查表开销。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyMapBenchmark {
+    @Param({"Enter", "ArrowLeft", "Delete", "a", "Z", "7", "F5", "Numpad3", "AudioVolumeUp", "Unidentified"})
+    public String key;
+
+    @Benchmark
+    public int toKeyCode() {
+        return KeyMap.toKeyCode(key);
+    }
+}
@@ -0,0 +1,38 @@
+package com.mobilemouse.pcjava;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * typeText 的字符规划与注入调用开销（录制后端）。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextInputBenchmark {
+    @Param({"ascii", "cjk", "emoji", "mixed"})
+    public String mix;
+
+    private String text;
+    private InputInjector injector;
+
+    @Setup
+    public void setup() {
+        switch (mix) {
+            case "ascii": text = "The quick brown fox jumps over the lazy dog, 1234567890!"; break;
+            case "cjk": text = "手机当作触控板与键盘使用，中文输入需要保证编码正确。"; break;
+            case "emoji": text = "😀👍🎉🚀❤️🔥"; break;
+            default: text = "Hello 世界 👋, meeting at 10:30 — 请准时 🙂"; break;
+        }
+        injector = BenchSupport.noopInjector();
+    }
+
+    @Benchmark
+    public void typeText() {
+        injector.typeText(text);
+    }
+}
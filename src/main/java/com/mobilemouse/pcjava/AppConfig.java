@@ -7,8 +7,64 @@ import java.io.*;
 
 public final class AppConfig {
     public double sensitivity = 1.0;     // cursor movement multiplier
+    public String accelCurve = "linear"; // pointer acceleration: linear | power | sigmoid
+    public double accelThreshold = 1.0;  // speed (client units/ms) where acceleration starts
+    public double accelExponent = 1.0;   // power: exponent; sigmoid: steepness
+    public double accelMax = 3.0;        // upper bound of the acceleration factor
     public double scrollSpeed = 1.0;     // multiply to wheel steps
     public boolean invertScroll = false; // invert vertical scroll
+    public int injectFps = 0;            // max motion injections per second, 0 = display refresh rate
+    public boolean kineticScroll = true; // continue wheel scrolling after a flick (roll/scroll velocity)
+    public boolean kineticPointer = false; // glide the pointer after a touchpad flick (touchend vx/vy)
+    public double kineticFriction = 4.0; // exponential decay rate per second of kinetic velocity
+    public long kineticMaxMs = 3000;     // upper bound of one kinetic run
+    public String arbitration = "merged"; // multi-client policy: merged | exclusive | timeslice
+    public long takeoverIdleMs = 1500;   // exclusive/timeslice: owner idle time after which another client may take over
+    public long timeSliceMs = 500;       // timeslice: how long an active owner keeps control before others may take over
+    public int sessionQueue = 256;       // per-connection injection queue capacity
+    public int sessionOverflow = 4;      // overflow capacity for non-droppable commands, in multiples of sessionQueue; exceeding it closes the connection
+    public double flowHighWater = 0.75; // queue fill ratio where motion is merged and clients are told to pause
+    public double flowLowWater = 0.25;  // queue fill ratio where clients are told to resume
+    public int maxBatch = 64;            // max events accepted in one batch message
+    public long batchFlushMs = 16;       // preferred client batching interval, advertised in hello
+    public int udpPort = 0;              // UDP side channel for motion/scroll, 0 = disabled
+    public String recordFile = "";       // rolling binary log of inbound events (<file>.0/.1), empty = disabled
+    public int recordSegmentMb = 64;     // size of each memory-mapped log segment
+    public int recordKeepRuns = 3;       // logs of previous runs kept as <file>.<time>.0/.1, 0 = discard
+    public boolean lowLatency = false;   // preset: 1 decoder, small socket buffers, high-priority spinning injector, 3 s lost timeout
+    public boolean tcpNoDelay = true;    // disable Nagle on client sockets
+    public int socketReceiveBuffer = 0;  // SO_RCVBUF per connection in bytes, 0 = OS default
+    public int socketSendBuffer = 0;     // SO_SNDBUF per connection in bytes, 0 = OS default
+    public int decoders = 0;             // WebSocket decoder threads, 0 = one per CPU
+    public boolean injectHighPriority = false; // run the injection thread at max priority
+    public int injectSpinUs = 0;         // busy-wait this long before the injection thread parks
+    public int connectionLostTimeoutSec = 60; // ping interval; a client silent for 1.5x is dropped, 0 = off
+    public long clockSyncMs = 1000;      // WebSocket ping interval for per-client RTT estimation, 0 = off
+    public long motionTtlMs = 200;       // motion/scroll delayed longer than this beyond the client's fastest path is late, 0 = off
+    public String lateMotion = "merge";  // late motion: merge (applied as one step) | drop
+    public long inputTimingMaxMs = 1000; // bunched clicks/keys are re-spaced by client ts gaps up to this long, 0 = off
+    public long doubleTapGapMs = 40;     // delay between the two clicks of a doubletap (scheduled, never blocks)
+    public long longPressMs = 0;         // server-side long press: right click after touchstart held still this long, 0 = client only
+    public long keyRepeatDelayMs = 0;    // server-side key auto-repeat after a key is held this long, 0 = leave to the OS
+    public int keyRepeatHz = 30;         // server-side key auto-repeat rate
+    public long modifierTimeoutMs = 10000; // modifiers still held after this long without any message are released, 0 = off
+    public long holdTimeoutMs = 30000;   // keys/buttons still held after this long without any message are released, 0 = off
+    public long gestureEndMs = 300;      // a touch gesture without touchend is treated as ended after this idle time, 0 = off
+    public long modifierLingerMs = 200;  // gesture and key_event modifiers (pinch Ctrl, rotate Shift, shortcut mods) stay down until idle this long, 0 = per frame/key
+    public long displayPollMs = 2000;    // display layout re-check interval, 0 = only on mismatch
+    public long cursorResyncMs = 200;    // idle gap after which the real pointer position is re-read
+    public String keyboardLayout = "auto"; // char-to-key table for typing: auto | us | uk | de | basic
+    public int textPasteMinChars = 8;    // text runs this long (or containing non-typable chars) are pasted
+    public int textChunkChars = 2000;    // max chars per clipboard paste
+    public long textPasteSettleMs = 60;  // wait after Ctrl+V before the clipboard is changed again
+    public boolean textRestoreClipboard = true; // restore the user's clipboard after pasting
+    public String backend = "robot";     // input backend: robot | recording | uinput
+    public String uinputDevice = "/dev/uinput";
+    public int recordingCapacity = 10000; // events kept by the recording backend, 0 = count only
+    public boolean robotWaitForIdle = true;
+    public int robotAutoDelayMs = 2;
+    public int statsHttpPort = 0;        // local-only GET /stats port, 0 = disabled
+    public boolean statsJmx = false;     // register com.mobilemouse:type=Stats MXBean
 
     private static final String CONFIG_NAME = "config.json";
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
@@ -0,0 +1,153 @@
+package com.mobilemouse.pcjava;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 二进制帧格式（版本 1），全部为大端序，与 JS DataView 默认字节序一致。
+ *
+ * <pre>
+ * frame  := u8 version, record*
+ * record := u8 opcode [i64 ts] payload
+ * </pre>
+ *
+ * opcode 最高位 {@link #FLAG_TS} 表示紧跟 8 字节客户端时间戳（毫秒）。各 opcode 的载荷：
+ * <pre>
+ * 0x01 MOVE_I16      i16 dx, i16 dy
+ * 0x02 MOVE_F32      f32 dx, f32 dy
+ * 0x03 SCROLL_I16    i16 dx, i16 dy
+ * 0x04 SCROLL_F32    f32 dx, f32 dy
+ * 0x05 BUTTON        u8 button(1 左 / 2 中 / 3 右), u8 action(0 down / 1 up / 2 click)
+ * 0x06 KEY           u16 keyCode(DOM keyCode), u8 action(0 down / 1 up), u8 mod(ctrl=1 alt=2 shift=4 meta=8)
+ * 0x07 TOUCHSTART    （无）
+ * 0x08 TOUCHEND      f32 vx, f32 vy
+ * 0x09 TAP           u8 kind(0 tap / 1 doubletap / 2 longpress)
+ * 0x0A PINCH         f32 dscale
+ * 0x0B ROTATE        f32 dr
+ * 0x0C ROLL          f32 ds, f32 dy
+ * 0x0D PING          （无，通常带时间戳）
+ * </pre>
+ * 解码直接读取原缓冲区并写入复用的 {@link InboundMessage}，不产生分配。
+ */
+final class BinaryProtocol {
+    static final int VERSION = 1;
+    static final int FLAG_TS = 0x80;
+
+    static final int OP_MOVE_I16 = 0x01;
+    static final int OP_MOVE_F32 = 0x02;
+    static final int OP_SCROLL_I16 = 0x03;
+    static final int OP_SCROLL_F32 = 0x04;
+    static final int OP_BUTTON = 0x05;
+    static final int OP_KEY = 0x06;
+    static final int OP_TOUCHSTART = 0x07;
+    static final int OP_TOUCHEND = 0x08;
+    static final int OP_TAP = 0x09;
+    static final int OP_PINCH = 0x0A;
+    static final int OP_ROTATE = 0x0B;
+    static final int OP_ROLL = 0x0C;
+    static final int OP_PING = 0x0D;
+
+    static final int RESULT_RECORD = 1;
+    static final int RESULT_END = 0;
+    static final int RESULT_ERROR = -1;
+
+    private BinaryProtocol() {}
+
+    /** 校验帧头并把 position 移到第一条记录；版本不符返回 false。 */
+    static boolean begin(ByteBuffer buf) {
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (!buf.hasRemaining()) return false;
+        return (buf.get() & 0xFF) == VERSION;
+    }
+
+    /** 解码下一条记录到 out，返回 RESULT_*。 */
+    static int next(ByteBuffer buf, InboundMessage out) {
+        if (!buf.hasRemaining()) return RESULT_END;
+        int op = buf.get() & 0xFF;
+        out.reset();
+        if ((op & FLAG_TS) != 0) {
+            if (buf.remaining() < 8) return RESULT_ERROR;
+            out.hasTs = true;
+            out.ts = buf.getLong();
+        }
+        switch (op & ~FLAG_TS) {
+            case OP_MOVE_I16:
+                if (buf.remaining() < 4) return RESULT_ERROR;
+                out.type = MessageType.MOUSE_MOVE;
+                out.dx = buf.getShort();
+                out.dy = buf.getShort();
+                return RESULT_RECORD;
+            case OP_MOVE_F32:
+                if (buf.remaining() < 8) return RESULT_ERROR;
+                out.type = MessageType.MOUSE_MOVE;
+                out.dx = buf.getFloat();
+                out.dy = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_SCROLL_I16:
+                if (buf.remaining() < 4) return RESULT_ERROR;
+                out.type = MessageType.SCROLL;
+                out.dx = buf.getShort();
+                out.dy = buf.getShort();
+                return RESULT_RECORD;
+            case OP_SCROLL_F32:
+                if (buf.remaining() < 8) return RESULT_ERROR;
+                out.type = MessageType.SCROLL;
+                out.dx = buf.getFloat();
+                out.dy = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_BUTTON: {
+                if (buf.remaining() < 2) return RESULT_ERROR;
+                int button = buf.get() & 0xFF;
+                int action = buf.get() & 0xFF;
+                out.type = MessageType.MOUSE_BUTTON;
+                out.button = button == InputInjector.BUTTON_RIGHT || button == InputInjector.BUTTON_MIDDLE
+                        ? button : InputInjector.BUTTON_LEFT;
+                out.action = action <= InputInjector.ACTION_CLICK ? action : InputInjector.ACTION_NONE;
+                return RESULT_RECORD;
+            }
+            case OP_KEY:
+                if (buf.remaining() < 4) return RESULT_ERROR;
+                out.type = MessageType.KEY_EVENT;
+                out.keyCode = buf.getShort() & 0xFFFF;
+                out.action = (buf.get() & 0xFF) == 0 ? InputInjector.ACTION_DOWN : InputInjector.ACTION_UP;
+                out.mods = buf.get() & 0x0F;
+                return RESULT_RECORD;
+            case OP_TOUCHSTART:
+                out.type = MessageType.TOUCHSTART;
+                return RESULT_RECORD;
+            case OP_TOUCHEND:
+                if (buf.remaining() < 8) return RESULT_ERROR;
+                out.type = MessageType.TOUCHEND;
+                out.vx = buf.getFloat();
+                out.vy = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_TAP: {
+                if (buf.remaining() < 1) return RESULT_ERROR;
+                int kind = buf.get() & 0xFF;
+                out.type = kind == 1 ? MessageType.DOUBLETAP : kind == 2 ? MessageType.LONGPRESS : MessageType.TAP;
+                return RESULT_RECORD;
+            }
+            case OP_PINCH:
+                if (buf.remaining() < 4) return RESULT_ERROR;
+                out.type = MessageType.PINCH;
+                out.dscale = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_ROTATE:
+                if (buf.remaining() < 4) return RESULT_ERROR;
+                out.type = MessageType.ROTATE;
+                out.dr = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_ROLL:
+                if (buf.remaining() < 8) return RESULT_ERROR;
+                out.type = MessageType.ROLL;
+                out.ds = buf.getFloat();
+                out.dy = buf.getFloat();
+                return RESULT_RECORD;
+            case OP_PING:
+                out.type = MessageType.PING;
+                return RESULT_RECORD;
+            default:
+                return RESULT_ERROR;
+        }
+    }
+}
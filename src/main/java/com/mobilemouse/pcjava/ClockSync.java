@@ -0,0 +1,119 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+
+/**
+ * 按连接估计客户端时钟与本机的偏差和往返时延，用于判断一条事件在路上耽搁了多久。
+ * 客户端 ts 约定为其发送时刻的毫秒时间戳（Unix 纪元，可带小数）。
+ *
+ * <p>每条带 ts 的消息（包括 ping）都是一个单向样本 d = 本机收到时刻 - ts = 时钟偏差 + 单向延迟。
+ * 与 NTP 的时钟滤波一样只信任延迟最小的样本：最近约 8 秒内 d 的最小值作为"最快路径"基线，
+ * 一条消息的滞后即 d - 基线，与两端时钟差多少无关。往返时延来自服务端定期发出的 WebSocket ping 帧
+ * （载荷为发送时刻，浏览器自动回 pong），同样取窗口最小值；偏差估计为 基线 - 最小往返 / 2。
+ * 按秒分桶求窗口最小值，网络路径或客户端时钟变化后旧基线最多保留一个窗口。
+ */
+final class ClockSync {
+    private static final int BUCKETS = 8;
+    private static final long BUCKET_NANOS = 1_000_000_000L;
+    // 样本太少时基线不可靠，不判定滞后
+    private static final int MIN_SAMPLES = 4;
+
+    /** 按秒分桶的滑动窗口最小值。 */
+    private static final class WindowMin {
+        private final long[] id = new long[BUCKETS];
+        private final double[] min = new double[BUCKETS];
+
+        WindowMin() {
+            Arrays.fill(id, Long.MIN_VALUE);
+        }
+
+        void add(long bucket, double v) {
+            int i = (int)Math.floorMod(bucket, (long)BUCKETS);
+            if (id[i] != bucket) {
+                id[i] = bucket;
+                min[i] = v;
+            } else if (v < min[i]) {
+                min[i] = v;
+            }
+        }
+
+        /** 窗口内的最小值，没有样本时为 NaN。 */
+        double get(long bucket) {
+            double m = Double.NaN;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (id[i] > bucket - BUCKETS && id[i] <= bucket && !(min[i] >= m)) m = min[i];
+            }
+            return m;
+        }
+    }
+
+    // System.nanoTime() 换算为本机纪元毫秒的基准
+    private static final double EPOCH_BASE_MS = System.currentTimeMillis() - System.nanoTime() / 1e6;
+    private final WindowMin delay = new WindowMin();
+    private final WindowMin rtt = new WindowMin();
+    private long samples = 0;
+    private long rttSamples = 0;
+    private double lastRttMs = Double.NaN;
+
+    /**
+     * 记录一条带 ts 的消息并返回它相对最快路径的滞后（毫秒，不小于 0）；样本不足时返回 0。
+     */
+    synchronized double observe(double clientTs, long recvNanos) {
+        if (clientTs <= 0) return 0;
+        long bucket = Math.floorDiv(recvNanos, BUCKET_NANOS);
+        double d = epochMs(recvNanos) - clientTs;
+        delay.add(bucket, d);
+        if (++samples < MIN_SAMPLES) return 0;
+        return Math.max(0, d - delay.get(bucket));
+    }
+
+    /** System.nanoTime() 时刻换算为本机纪元毫秒。 */
+    static double epochMs(long nanos) {
+        return EPOCH_BASE_MS + nanos / 1e6;
+    }
+
+    /**
+     * 客户端 ts 按估计的时钟偏差换算为本机时钟下的发送时刻（纪元毫秒，与 {@link #epochMs} 同一时基）；
+     * 与动作 TTL 用同一组样本，样本不足时返回 0，此时不计端到端延迟。
+     */
+    synchronized double toLocalMs(double clientTs) {
+        if (clientTs <= 0 || samples < MIN_SAMPLES) return 0;
+        double offset = offsetMs();
+        return Double.isNaN(offset) ? 0 : clientTs + offset;
+    }
+
+    /** 服务端 ping 帧的往返时延。 */
+    synchronized void onRtt(long nanos) {
+        if (nanos < 0) return;
+        lastRttMs = nanos / 1e6;
+        rtt.add(Math.floorDiv(System.nanoTime(), BUCKET_NANOS), lastRttMs);
+        rttSamples++;
+    }
+
+    /** 客户端时钟加上该值即为本机时钟（毫秒）；没有样本时为 NaN。 */
+    synchronized double offsetMs() {
+        long bucket = Math.floorDiv(System.nanoTime(), BUCKET_NANOS);
+        double base = delay.get(bucket);
+        double r = rtt.get(bucket);
+        return Double.isNaN(r) ? base : base - r / 2;
+    }
+
+    /** 窗口内的最小往返时延（毫秒）；没有样本时为 NaN。 */
+    synchronized double rttMs() {
+        return rtt.get(Math.floorDiv(System.nanoTime(), BUCKET_NANOS));
+    }
+
+    synchronized JsonObject toJson() {
+        JsonObject o = new JsonObject();
+        o.addProperty("samples", samples);
+        o.addProperty("rttSamples", rttSamples);
+        double offset = offsetMs();
+        double r = rttMs();
+        if (!Double.isNaN(offset)) o.addProperty("offsetMs", Math.round(offset * 10) / 10.0);
+        if (!Double.isNaN(r)) o.addProperty("rttMs", Math.round(r * 10) / 10.0);
+        if (!Double.isNaN(lastRttMs)) o.addProperty("lastRttMs", Math.round(lastRttMs * 10) / 10.0);
+        return o;
+    }
+}
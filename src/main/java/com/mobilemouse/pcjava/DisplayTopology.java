@@ -0,0 +1,160 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.Dimension;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 显示器布局缓存。启动时枚举一次各显示器边界，之后由后台线程低频轮询，
+ * 布局变化时整体替换快照；注入线程只读 volatile 快照，不再逐次询问系统。
+ */
+final class DisplayTopology {
+    /** 不可变的布局快照，各显示器边界按下标平铺存放。 */
+    static final class Layout {
+        final int[] x, y, w, h;
+        final int minX, minY, maxX, maxY;
+
+        Layout(int[] x, int[] y, int[] w, int[] h) {
+            this.x = x;
+            this.y = y;
+            this.w = w;
+            this.h = h;
+            int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+            for (int i = 0; i < x.length; i++) {
+                x0 = Math.min(x0, x[i]);
+                y0 = Math.min(y0, y[i]);
+                x1 = Math.max(x1, x[i] + w[i]);
+                y1 = Math.max(y1, y[i] + h[i]);
+            }
+            minX = x0;
+            minY = y0;
+            maxX = x1;
+            maxY = y1;
+        }
+
+        int count() {
+            return x.length;
+        }
+
+        boolean sameAs(Layout o) {
+            return o != null && Arrays.equals(x, o.x) && Arrays.equals(y, o.y)
+                    && Arrays.equals(w, o.w) && Arrays.equals(h, o.h);
+        }
+    }
+
+    private volatile Layout layout;
+    private final ScheduledExecutorService poller;
+
+    DisplayTopology(long pollMs) {
+        layout = query();
+        if (pollMs > 0) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "display-topology");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            poller.scheduleWithFixedDelay(this::refresh, pollMs, pollMs, TimeUnit.MILLISECONDS);
+        } else {
+            poller = null;
+        }
+    }
+
+    Layout layout() {
+        return layout;
+    }
+
+    /** 重新枚举显示器；布局未变时保留原快照。返回是否发生变化。 */
+    boolean refresh() {
+        try {
+            Layout next = query();
+            if (next.sameAs(layout)) return false;
+            layout = next;
+            System.out.println("显示器布局已更新: " + next.count() + " 个显示器");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    boolean contains(int px, int py) {
+        Layout l = layout;
+        for (int i = 0; i < l.x.length; i++) {
+            if (px >= l.x[i] && py >= l.y[i] && px < l.x[i] + l.w[i] && py < l.y[i] + l.h[i]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 把坐标限制在真实的显示器区域内：落在某个显示器内则原样返回，
+     * 否则夹到距离最近的显示器边缘（多显示器之间的空隙不会被当作可达区域）。
+     * 结果打包为 long，高 32 位为 x，低 32 位为 y。
+     */
+    long clamp(int px, int py) {
+        Layout l = layout;
+        long best = 0;
+        long bestDist = Long.MAX_VALUE;
+        for (int i = 0; i < l.x.length; i++) {
+            int cx = Math.max(l.x[i], Math.min(px, l.x[i] + l.w[i] - 1));
+            int cy = Math.max(l.y[i], Math.min(py, l.y[i] + l.h[i] - 1));
+            long ddx = (long)cx - px, ddy = (long)cy - py;
+            long dist = ddx * ddx + ddy * ddy;
+            if (dist < bestDist) {
+                bestDist = dist;
+                best = pack(cx, cy);
+                if (dist == 0) break;
+            }
+        }
+        return best;
+    }
+
+    static long pack(int px, int py) {
+        return ((long)px << 32) | (py & 0xFFFFFFFFL);
+    }
+
+    static int unpackX(long p) {
+        return (int)(p >> 32);
+    }
+
+    static int unpackY(long p) {
+        return (int)p;
+    }
+
+    void shutdown() {
+        if (poller != null) poller.shutdownNow();
+    }
+
+    private static Layout query() {
+        try {
+            GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+            if (devices.length > 0) {
+                int n = devices.length;
+                int[] x = new int[n], y = new int[n], w = new int[n], h = new int[n];
+                for (int i = 0; i < n; i++) {
+                    Rectangle b = devices[i].getDefaultConfiguration().getBounds();
+                    x[i] = b.x;
+                    y[i] = b.y;
+                    w[i] = b.width;
+                    h[i] = b.height;
+                }
+                return new Layout(x, y, w, h);
+            }
+        } catch (Throwable ignored) {
+            // 无头环境或无法连接显示服务时退回主屏尺寸
+        }
+        int width = 1920, height = 1080;
+        try {
+            Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+            width = screen.width;
+            height = screen.height;
+        } catch (Throwable ignored) {
+        }
+        return new Layout(new int[]{0}, new int[]{0}, new int[]{width}, new int[]{height});
+    }
+}
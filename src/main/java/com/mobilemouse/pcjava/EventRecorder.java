@@ -0,0 +1,302 @@
+package com.mobilemouse.pcjava;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 入站事件记录：把每条收到的事件追加到内存映射的滚动日志，供 {@link Replay} 重放。
+ * 日志由 &lt;base&gt;.0 与 &lt;base&gt;.1 两个定长段交替写入，写满一段就切到另一段并覆盖它，
+ * 最多保留两段。启动时上一次运行留下的两段先改名为 &lt;base&gt;.&lt;时间&gt;.0/.1（崩溃或重启后仍可重放），
+ * 只保留最近 recordKeepRuns 次。全部为大端序：
+ * <pre>
+ * segment := "MMEL", u16 version, u16 generation, i64 startEpochMs, i64 startNanos, entry*, i32 0
+ * entry   := i32 length, u8 kind, u8 type, u16 0, i32 conn, i64 recvNanos(相对 startNanos), payload
+ * EVENT   := u8 button, i8 action, u8 mods, u8 hasTs, i32 keyCode, f32 dx dy ds dr dscale vx vy, f64 ts
+ * RAW     := 原始 JSON（UTF-8），树解析路径的消息
+ * OPEN    := 连接标签（UTF-8）
+ * CLOSE   := （无）
+ * </pre>
+ * 热路径上只是一次短临界区内的定长写入，不分配对象（RAW 除外）；每条之后写一个 0 长度作为结尾标记。
+ */
+final class EventRecorder {
+    static final int KIND_EVENT = 1;
+    static final int KIND_RAW = 2;
+    static final int KIND_OPEN = 3;
+    static final int KIND_CLOSE = 4;
+
+    private static final byte[] MAGIC = {'M', 'M', 'E', 'L'};
+    private static final int VERSION = 1;
+    private static final int HEADER = 4 + 2 + 2 + 8 + 8;
+    private static final int ENTRY_HEADER = 4 + 1 + 1 + 2 + 4 + 8;
+    private static final int EVENT_PAYLOAD = 4 + 4 + 7 * 4 + 8;
+
+    private final String base;
+    private final int segmentBytes;
+    private final long startEpochMs = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final MappedByteBuffer[] segments = new MappedByteBuffer[2];
+    private final RandomAccessFile[] files = new RandomAccessFile[2];
+    private MappedByteBuffer current;
+    private int generation = 0;
+    private boolean closed = false;
+
+    EventRecorder(String base, int segmentBytes) throws IOException {
+        this(base, segmentBytes, 3);
+    }
+
+    EventRecorder(String base, int segmentBytes, int keepRuns) throws IOException {
+        this.base = base;
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        // 上一次运行的日志改名保存，不与本次混在一起，也不被覆盖
+        rotate(base, Math.max(0, keepRuns));
+        current = map(0);
+        startSegment();
+    }
+
+    /** 把已有的 &lt;base&gt;.0/.1 改名为 &lt;base&gt;.&lt;最后写入时间&gt;.0/.1，并删除超出 keepRuns 的更早的运行。 */
+    private static void rotate(String base, int keepRuns) throws IOException {
+        File f0 = new File(base + ".0");
+        File f1 = new File(base + ".1");
+        if (!f0.exists() && !f1.exists()) return;
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(Math.max(f0.lastModified(), f1.lastModified())));
+        String old = base + "." + stamp;
+        for (int n = 1; new File(old + ".0").exists() || new File(old + ".1").exists(); n++) {
+            old = base + "." + stamp + "-" + n;
+        }
+        if (keepRuns == 0) {
+            f0.delete();
+            f1.delete();
+            return;
+        }
+        if (f0.exists() && !f0.renameTo(new File(old + ".0"))) throw new IOException("无法保存上次的日志 " + f0);
+        if (f1.exists() && !f1.renameTo(new File(old + ".1"))) throw new IOException("无法保存上次的日志 " + f1);
+        System.out.println("事件记录: 上次运行的日志已保存为 " + old + "（可用 Replay 重放）");
+        prune(base, keepRuns);
+    }
+
+    private static void prune(String base, int keepRuns) {
+        File b = new File(base).getAbsoluteFile();
+        File dir = b.getParentFile();
+        String[] names = dir == null ? null : dir.list();
+        if (names == null) return;
+        Pattern p = Pattern.compile(Pattern.quote(b.getName()) + "\\.(\\d{8}-\\d{6}(?:-\\d+)?)\\.[01]");
+        // 时间戳按字典序即时间顺序
+        TreeSet<String> runs = new TreeSet<>();
+        for (String n : names) {
+            Matcher m = p.matcher(n);
+            if (m.matches()) runs.add(m.group(1));
+        }
+        List<String> old = new ArrayList<>(runs);
+        for (int i = 0; i < old.size() - keepRuns; i++) {
+            for (String suffix : Arrays.asList(".0", ".1")) {
+                new File(dir, b.getName() + "." + old.get(i) + suffix).delete();
+            }
+        }
+    }
+
+    /** 按配置创建记录器；未配置或创建失败时返回 null。 */
+    static EventRecorder open(AppConfig config) {
+        if (config.recordFile == null || config.recordFile.trim().isEmpty()) return null;
+        try {
+            EventRecorder r = new EventRecorder(config.recordFile.trim(),
+                    (int)Math.min(Integer.MAX_VALUE - 8, Math.max(1, config.recordSegmentMb) * 1024L * 1024L),
+                    config.recordKeepRuns);
+            System.out.println("事件记录: " + r.base + ".0/.1");
+            return r;
+        } catch (IOException e) {
+            System.out.println("事件记录不可用: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        File f = new File(base + "." + index);
+        File dir = f.getAbsoluteFile().getParentFile();
+        if (dir != null) dir.mkdirs();
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        raf.setLength(0);
+        raf.setLength(segmentBytes);
+        MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        files[index] = raf;
+        segments[index] = buf;
+        return buf;
+    }
+
+    private void startSegment() {
+        current.clear();
+        current.put(MAGIC).putShort((short)VERSION).putShort((short)generation)
+                .putLong(startEpochMs).putLong(startNanos);
+        current.putInt(current.position(), 0);
+    }
+
+    /** 当前段放不下 need 字节时切换到另一段（复用已映射的缓冲区）。 */
+    private boolean reserve(int need) throws IOException {
+        if (closed) return false;
+        if (current.remaining() >= need + 4) return true;
+        if (HEADER + need + 4 > segmentBytes) return false;
+        generation++;
+        int index = generation & 1;
+        current = segments[index] != null ? segments[index] : map(index);
+        startSegment();
+        return true;
+    }
+
+    private void entryHeader(int length, int kind, int type, int conn, long recvNanos) {
+        current.putInt(length).put((byte)kind).put((byte)type).putShort((short)0)
+                .putInt(conn).putLong(recvNanos - startNanos);
+    }
+
+    synchronized void record(int conn, long recvNanos, InboundMessage m) {
+        try {
+            int len = ENTRY_HEADER + EVENT_PAYLOAD;
+            if (!reserve(len)) return;
+            entryHeader(len, KIND_EVENT, m.type, conn, recvNanos);
+            current.put((byte)m.button).put((byte)m.action).put((byte)m.mods).put((byte)(m.hasTs ? 1 : 0))
+                    .putInt(m.keyCode)
+                    .putFloat((float)m.dx).putFloat((float)m.dy).putFloat((float)m.ds).putFloat((float)m.dr)
+                    .putFloat((float)m.dscale).putFloat((float)m.vx).putFloat((float)m.vy)
+                    .putDouble(m.ts);
+            current.putInt(current.position(), 0);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    void recordRaw(int conn, long recvNanos, String json) {
+        text(KIND_RAW, MessageType.UNKNOWN, conn, recvNanos, json);
+    }
+
+    void recordOpen(int conn, String label) {
+        text(KIND_OPEN, MessageType.UNKNOWN, conn, System.nanoTime(), label);
+    }
+
+    void recordClose(int conn) {
+        text(KIND_CLOSE, MessageType.UNKNOWN, conn, System.nanoTime(), "");
+    }
+
+    private synchronized void text(int kind, int type, int conn, long recvNanos, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        try {
+            int len = ENTRY_HEADER + bytes.length;
+            if (!reserve(len)) return;
+            entryHeader(len, kind, type, conn, recvNanos);
+            current.put(bytes);
+            current.putInt(current.position(), 0);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        closed = true;
+        System.out.println("事件记录已停止: " + e.getMessage());
+    }
+
+    synchronized void close() {
+        if (closed) return;
+        closed = true;
+        for (int i = 0; i < 2; i++) {
+            if (segments[i] != null) segments[i].force();
+            try {
+                if (files[i] != null) files[i].close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** 重放时逐条回调的日志条目；EVENT 的字段写入 msg，其余种类的文本在 text 中。 */
+    interface Visitor {
+        void entry(int kind, int conn, long nanos, InboundMessage msg, String text) throws Exception;
+    }
+
+    /**
+     * 按写入顺序读取日志：path 可以是 base（读取同一次运行的两段，按段序号排序）或单个段文件。
+     * nanos 为相对该次运行开始的时间。
+     */
+    static void read(String path, Visitor visitor) throws Exception {
+        List<ByteBuffer> list = new ArrayList<>();
+        File single = new File(path);
+        if (single.isFile()) {
+            ByteBuffer b = load(single);
+            if (b != null) list.add(b);
+        } else {
+            for (int i = 0; i < 2; i++) {
+                ByteBuffer b = load(new File(path + "." + i));
+                if (b != null) list.add(b);
+            }
+            // 两段来自同一次运行时按段序号排序；否则只保留较新的一次运行
+            if (list.size() == 2 && list.get(0).getLong(8) != list.get(1).getLong(8)) {
+                list.remove(list.get(0).getLong(8) < list.get(1).getLong(8) ? 0 : 1);
+            }
+            // 段序号按 u16 回绕比较
+            list.sort((a, b) -> (short)(a.getShort(6) - b.getShort(6)));
+        }
+        if (list.isEmpty()) throw new IOException("没有可读取的事件日志: " + path);
+        InboundMessage msg = new InboundMessage();
+        for (ByteBuffer b : list) {
+            b.position(HEADER);
+            while (b.remaining() >= 4) {
+                int len = b.getInt(b.position());
+                if (len < ENTRY_HEADER || len > b.remaining()) break;
+                int start = b.position();
+                b.getInt();
+                int kind = b.get() & 0xFF;
+                int type = b.get() & 0xFF;
+                b.getShort();
+                int conn = b.getInt();
+                long nanos = b.getLong();
+                String text = null;
+                if (kind == KIND_EVENT) {
+                    msg.reset();
+                    msg.type = type < MessageType.COUNT ? type : MessageType.UNKNOWN;
+                    msg.button = b.get() & 0xFF;
+                    msg.action = b.get();
+                    msg.mods = b.get() & 0xFF;
+                    msg.hasTs = b.get() != 0;
+                    msg.keyCode = b.getInt();
+                    msg.dx = b.getFloat();
+                    msg.dy = b.getFloat();
+                    msg.ds = b.getFloat();
+                    msg.dr = b.getFloat();
+                    msg.dscale = b.getFloat();
+                    msg.vx = b.getFloat();
+                    msg.vy = b.getFloat();
+                    msg.ts = b.getDouble();
+                } else {
+                    byte[] bytes = new byte[len - ENTRY_HEADER];
+                    b.get(bytes);
+                    text = new String(bytes, StandardCharsets.UTF_8);
+                }
+                b.position(start + len);
+                visitor.entry(kind, conn, nanos, msg, text);
+            }
+        }
+    }
+
+    private static ByteBuffer load(File f) throws IOException {
+        if (!f.isFile() || f.length() < HEADER) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            ByteBuffer b = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            b.order(ByteOrder.BIG_ENDIAN);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (b.get(i) != MAGIC[i]) return null;
+            }
+            return (b.getShort(4) & 0xFFFF) == VERSION ? b : null;
+        }
+    }
+}
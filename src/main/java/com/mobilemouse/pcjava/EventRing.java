@@ -0,0 +1,70 @@
+package com.mobilemouse.pcjava;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多生产者、单消费者的有界无锁环形队列。
+ * 生产者通过 {@link #tryClaim()} 申请序号、填写槽位后 {@link #publish(long)}；
+ * 消费者按序号顺序 {@link #poll(InputCommand)}，槽位对象全程复用。
+ */
+final class EventRing {
+    private final InputCommand[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    EventRing(int capacity) {
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new InputCommand[cap];
+        published = new AtomicLongArray(cap);
+        for (int i = 0; i < cap; i++) {
+            slots[i] = new InputCommand();
+            published.set(i, -1L);
+        }
+        mask = cap - 1;
+    }
+
+    /** 非阻塞申请序号；队列已满时返回 -1，由调用方决定改入溢出队列或拒绝。 */
+    long tryClaim() {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= slots.length) return -1L;
+            if (tail.compareAndSet(t, t + 1)) return t;
+        }
+    }
+
+    InputCommand slot(long seq) {
+        return slots[(int)seq & mask];
+    }
+
+    void publish(long seq) {
+        published.set((int)seq & mask, seq);
+    }
+
+    /** 取出队头事件复制到 out；队列为空时返回 false。仅限消费者线程调用。 */
+    boolean poll(InputCommand out) {
+        long h = head;
+        int i = (int)h & mask;
+        if (published.get(i) != h) return false;
+        InputCommand s = slots[i];
+        out.copyFrom(s);
+        s.clear();
+        head = h + 1;
+        return true;
+    }
+
+    boolean isEmpty() {
+        long h = head;
+        return published.get((int)h & mask) != h;
+    }
+
+    int size() {
+        return (int)Math.max(0L, tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
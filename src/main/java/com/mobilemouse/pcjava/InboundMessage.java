@@ -0,0 +1,83 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * 一条入站消息的解码结果，字段均为基本类型，按线程复用。
+ * 快速路径由 {@link MessageDecoder} 直接填充；树解析路径通过 {@link #fromTree(JsonObject)} 填充。
+ */
+final class InboundMessage {
+    int type;
+    double dx, dy, ds, dr, dscale, vx, vy;
+    int button;
+    int action;
+    int keyCode;   // 二进制 KEY 记录的 DOM keyCode
+    int mods;      // 二进制 KEY 记录的修饰键掩码（InputCommand.MOD_*）
+    boolean hasTs;
+    double ts;
+    // batch 内事件相对批次 ts 的毫秒偏移
+    boolean hasDt;
+    double dt;
+    // ts 在原始报文中的字符区间，用于原样回显；树解析路径下为 tsText
+    String raw;
+    int tsStart, tsEnd;
+    String tsText;
+
+    void reset() {
+        type = MessageType.UNKNOWN;
+        dx = dy = ds = dr = dscale = vx = vy = 0.0;
+        button = InputInjector.BUTTON_LEFT;
+        action = InputInjector.ACTION_DOWN;
+        keyCode = 0;
+        mods = 0;
+        hasTs = false;
+        ts = 0.0;
+        hasDt = false;
+        dt = 0.0;
+        raw = null;
+        tsStart = tsEnd = 0;
+        tsText = null;
+    }
+
+    /** 把 ts 原文追加到 sb，保持客户端发送的数值格式。 */
+    void appendTs(StringBuilder sb) {
+        if (tsText != null) sb.append(tsText);
+        else if (raw != null) sb.append(raw, tsStart, tsEnd);
+        else sb.append((long)ts);
+    }
+
+    void fromTree(JsonObject root) {
+        reset();
+        type = root.has("type") ? MessageType.lookup(root.get("type").getAsString()) : MessageType.UNKNOWN;
+        dx = number(root, "dx");
+        dy = number(root, "dy");
+        ds = number(root, "ds");
+        dr = number(root, "dr");
+        dscale = number(root, "dscale");
+        vx = number(root, "vx");
+        vy = number(root, "vy");
+        if (root.has("ts")) {
+            JsonElement t = root.get("ts");
+            hasTs = true;
+            tsText = t.toString();
+            if (t.isJsonPrimitive() && t.getAsJsonPrimitive().isNumber()) ts = t.getAsDouble();
+        }
+        if (root.has("dt")) {
+            hasDt = true;
+            dt = root.get("dt").getAsDouble();
+        }
+        if (root.has("button")) {
+            String b = root.get("button").getAsString();
+            if (b != null && !b.isEmpty()) button = InputInjector.buttonOf(b);
+        }
+        if (root.has("action")) {
+            String a = root.get("action").getAsString();
+            if (a != null && !a.isEmpty()) action = InputInjector.actionOf(a);
+        }
+    }
+
+    private static double number(JsonObject root, String name) {
+        return root.has(name) ? root.get(name).getAsDouble() : 0.0;
+    }
+}
@@ -0,0 +1,628 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 注入流水线：WebSocket 线程只负责把命令放进各自 {@link Session} 的有界队列，
+ * 专用线程按轮转顺序从各会话取出（每轮每个会话最多 {@link #QUANTUM} 条），经仲裁后调用 {@link InputInjector}。
+ * 连续的相对移动、连续的滚动会被累加，每个显示帧最多注入一次；
+ * 按键、键盘、文本等事件保持原有顺序，遇到时先冲刷已累加的移动/滚动；
+ * 文本交给 {@link TextInjector} 在独立线程执行，期间的键盘事件排在文本之后。
+ * 带客户端 ts 的按键、键盘命令挤在一起到达时（网络停顿后），按客户端发送间隔（不超过 inputTimingMaxMs）
+ * 推迟注入，保持双击间隔、按住时长不被压缩；推迟期间该会话后续命令随之等待，其他会话照常。
+ *
+ * <p>仲裁策略（arbitration）：merged 合并所有会话的输入；exclusive 同一时刻只有一个会话有控制权，
+ * 其他会话在控制者空闲 takeoverIdleMs 后或发送 takeover 时接管；timeslice 在此基础上，
+ * 控制者持有超过 timeSliceMs 后其他会话的输入也可接管。失去控制权的会话按住的键会被释放。
+ *
+ * <p>注入器可以晚于流水线就绪（启动时与绑定端口并行创建后端）：此前会话照常入队，
+ * 注入线程等到注入器就绪后才开始取出，早到的输入不会丢失。
+ */
+public final class InjectionPipeline {
+    private static final int LOCAL_QUEUE_CAPACITY = 1024;
+    // 每轮从一个会话最多取出的命令数
+    private static final int QUANTUM = 32;
+
+    static final int POLICY_MERGED = 0;
+    static final int POLICY_EXCLUSIVE = 1;
+    static final int POLICY_TIMESLICE = 2;
+
+    private final AppConfig config;
+    private final CompletableFuture<InputInjector> pending;
+    // 注入线程在注入器就绪后赋值
+    private InputInjector injector;
+    private volatile TextInjector text;
+    // 就绪后按显示刷新率确定，此前按 injectFps（未配置时 60 Hz）
+    private volatile long frameNanos;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private final int sessionCapacity;
+    private final int policy;
+    private final long takeoverIdleNanos;
+    private final long sliceNanos;
+    private final Thread thread;
+    // 低延迟模式：队列取空后先空转这么久再挂起，省去一次唤醒的调度延迟
+    private final long spinNanos;
+    // 按客户端间隔推迟按键/键盘的上限，0 表示不推迟
+    private final long inputTimingNanos;
+    private final Session local;
+    private final AtomicInteger nextSessionId = new AtomicInteger();
+    private volatile Session[] sessions = new Session[0];
+    private volatile boolean running = true;
+    private volatile boolean parked = false;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    // 以下状态仅由注入线程访问
+    private final InputCommand current = new InputCommand();
+    private int roundRobin = 0;
+    private Session owner;
+    private long ownerSince = 0;
+    private int pendingKind = 0;
+    private int pendingMods = 0;
+    private double pendingX = 0, pendingY = 0;
+    private int pendingCount = 0;
+    private long nextFrameAt = 0;
+    // 本轮是否有会话在推迟中，以及最早到期的时刻
+    private boolean holding = false;
+    private long holdUntil = 0;
+    // 等待合并移动冲刷后才能结算的消息标记
+    private static final int MAX_PENDING_MARKS = 256;
+    private final MessageStats[] markStats = new MessageStats[MAX_PENDING_MARKS];
+    private final int[] markType = new int[MAX_PENDING_MARKS];
+    private final long[] markRecv = new long[MAX_PENDING_MARKS];
+    private final double[] markTs = new double[MAX_PENDING_MARKS];
+    private int markCount = 0;
+
+    public InjectionPipeline(InputInjector injector) {
+        this(injector.getConfig(), CompletableFuture.completedFuture(injector));
+    }
+
+    /** injector 完成前入队的命令在注入线程中等待；injector 失败时注入线程退出。 */
+    public InjectionPipeline(AppConfig config, CompletableFuture<InputInjector> injector) {
+        this.config = config;
+        this.pending = injector;
+        this.frameNanos = 1_000_000_000L / (config.injectFps > 0 ? config.injectFps : 60);
+        this.sessionCapacity = config.sessionQueue > 0 ? config.sessionQueue : 256;
+        this.policy = policyOf(config.arbitration);
+        this.takeoverIdleNanos = Math.max(0, config.takeoverIdleMs) * 1_000_000L;
+        this.sliceNanos = Math.max(1, config.timeSliceMs) * 1_000_000L;
+        this.inputTimingNanos = Math.max(0, config.inputTimingMaxMs) * 1_000_000L;
+        // 直接调用本类入队方法时使用的内部会话，不参与独占仲裁
+        this.local = new Session(this, 0, "local", new MessageStats("local", null), LOCAL_QUEUE_CAPACITY, null);
+        register(local);
+        this.spinNanos = resolveSpinUs(config) * 1000L;
+        this.thread = new Thread(this::runLoop, "input-injector");
+        this.thread.setDaemon(true);
+        if (config.injectHighPriority || config.lowLatency) this.thread.setPriority(Thread.MAX_PRIORITY);
+        this.thread.start();
+    }
+
+    static int policyOf(String name) {
+        if (name == null) return POLICY_MERGED;
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "exclusive": return POLICY_EXCLUSIVE;
+            case "timeslice": return POLICY_TIMESLICE;
+            default: return POLICY_MERGED;
+        }
+    }
+
+    /** 为一个连接创建会话并加入轮转；timers 为空时该会话不做惯性与其他定时动作。 */
+    Session openSession(String label, MessageStats stats, TimerWheel timers) {
+        Session s = new Session(this, nextSessionId.incrementAndGet(), label, stats, sessionCapacity, timers);
+        register(s);
+        return s;
+    }
+
+    private synchronized void register(Session s) {
+        Session[] old = sessions;
+        Session[] next = new Session[old.length + 1];
+        System.arraycopy(old, 0, next, 0, old.length);
+        next[old.length] = s;
+        sessions = next;
+    }
+
+    private synchronized void unregister(Session s) {
+        Session[] old = sessions;
+        int n = 0;
+        Session[] next = new Session[Math.max(0, old.length - 1)];
+        for (Session o : old) {
+            if (o != s && n < next.length) next[n++] = o;
+        }
+        sessions = next;
+    }
+
+    public void moveRelative(double dx, double dy) {
+        local.moveRelative(dx, dy);
+    }
+
+    public void scroll(double dx, double dy) {
+        local.scroll(dx, dy);
+    }
+
+    public void mouseButton(String button, String action) {
+        local.mouseButton(button, action);
+    }
+
+    public void mouseButton(int button, int action) {
+        local.mouseButton(button, action);
+    }
+
+    public void setModifiers(boolean ctrl, boolean alt, boolean shift, boolean meta, boolean press) {
+        local.setModifiers(ctrl, alt, shift, meta, press);
+    }
+
+    public void keyEvent(String key, boolean isDown) {
+        local.keyEvent(key, isDown);
+    }
+
+    public void keyCode(int code, boolean isDown) {
+        local.keyCode(code, isDown);
+    }
+
+    public void typeText(String text) {
+        local.typeText(text);
+    }
+
+    public void mark(MessageStats stats, int type, long recvNanos, double sentMs) {
+        local.mark(stats, type, recvNanos, sentMs);
+    }
+
+    /** 已被合并、未单独注入的事件数。 */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    public int getQueueDepth() {
+        int n = 0;
+        for (Session s : sessions) n += s.getQueueDepth();
+        return n;
+    }
+
+    public int getSessionCount() {
+        return sessions.length - 1;
+    }
+
+    /** 建议客户端的发送频率（次/秒），即合并注入的帧率。 */
+    int getInjectRate() {
+        return (int)Math.max(1, 1_000_000_000L / frameNanos);
+    }
+
+    /** 合并注入的帧间隔（纳秒），惯性等定时任务按此节奏对齐。 */
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    AppConfig getConfig() {
+        return config;
+    }
+
+    /** 注入器就绪、注入线程开始取出命令时完成。 */
+    CompletableFuture<Void> whenReady() {
+        return ready;
+    }
+
+    boolean isReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally();
+    }
+
+    /**
+     * 停止注入线程并等它退出（最多 1 秒）：退出前抬起各会话仍按住的键、按键与修饰键并关闭注入器，
+     * 进程退出后系统里不会留下按住的输入。
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        if (Thread.currentThread() == thread) return;
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void onEnqueued(boolean wake) {
+        received.incrementAndGet();
+        if (wake) wake();
+    }
+
+    void wake() {
+        if (parked) LockSupport.unpark(thread);
+    }
+
+    private void runLoop() {
+        if (!awaitInjector()) return;
+        try {
+            loop();
+        } finally {
+            releaseOnExit();
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                if (drainRound()) {
+                    if (pendingCount > 0 && System.nanoTime() >= nextFrameAt) flushPending();
+                    injector.releaseIdleModifiers(System.nanoTime());
+                    continue;
+                }
+                long wait = 0L;
+                if (pendingCount > 0) {
+                    wait = nextFrameAt - System.nanoTime();
+                    if (wait <= 0) {
+                        flushPending();
+                        continue;
+                    }
+                }
+                if (holding) {
+                    long h = holdUntil - System.nanoTime();
+                    if (h <= 0) continue;
+                    wait = wait > 0 ? Math.min(wait, h) : h;
+                }
+                // 手势与 key_event 临时按住的修饰键停顿 modifierLingerMs 后抬起
+                long m = injector.releaseIdleModifiers(System.nanoTime());
+                if (m > 0) wait = wait > 0 ? Math.min(wait, m) : m;
+                park(wait);
+            } catch (Throwable t) {
+                System.out.println("注入错误: " + t.getMessage());
+            }
+        }
+    }
+
+    private void releaseOnExit() {
+        text.shutdown(500);
+        for (Session s : sessions) {
+            try {
+                releaseHeld(s);
+            } catch (Throwable t) {
+                System.out.println("注入: 退出时释放失败: " + t.getMessage());
+            }
+        }
+        injector.close();
+    }
+
+    /** 等待注入器创建完成；期间会话的命令留在各自队列中。失败或关闭时返回 false。 */
+    private boolean awaitInjector() {
+        while (running) {
+            try {
+                injector = pending.get(100, TimeUnit.MILLISECONDS);
+                text = new TextInjector(injector);
+                frameNanos = 1_000_000_000L / resolveFps(config);
+                ready.complete(null);
+                return true;
+            } catch (TimeoutException e) {
+                // 继续等待，期间检查是否已关闭
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.out.println("注入: 注入后端创建失败: " + e.getCause());
+                ready.completeExceptionally(e.getCause());
+                return false;
+            }
+        }
+        ready.cancel(false);
+        return false;
+    }
+
+    /** 按轮转顺序从每个会话取出至多 QUANTUM 条命令；没有取到任何命令时返回 false。 */
+    private boolean drainRound() {
+        Session[] ss = sessions;
+        int n = ss.length;
+        boolean any = false;
+        long now = System.nanoTime();
+        holding = false;
+        for (int k = 0; k < n; k++) {
+            Session s = ss[(roundRobin + k) % n];
+            int q = 0;
+            if (s.holding && now >= s.holdUntil) {
+                s.holding = false;
+                inject(s, s.deferred);
+                q++;
+            }
+            for (; q < QUANTUM && !s.holding && s.ring.poll(current); q++) offer(s, current);
+            // 环形队列取空后依次取溢出队列、旁路累加的移动/滚动
+            for (; q < QUANTUM && !s.holding && s.pollOverflow(current); q++) offer(s, current);
+            for (; q < QUANTUM && !s.holding && s.takeShed(current); q++) offer(s, current);
+            if (q > 0) {
+                any = true;
+                s.checkResume();
+            }
+            if (s.holding) {
+                if (!holding || s.holdUntil - holdUntil < 0) holdUntil = s.holdUntil;
+                holding = true;
+            } else if (s.closed && !s.hasWork()) {
+                retire(s);
+            }
+        }
+        roundRobin = n == 0 ? 0 : (roundRobin + 1) % n;
+        return any;
+    }
+
+    private boolean allEmpty() {
+        for (Session s : sessions) {
+            // 推迟中的会话到期前没有可处理的命令，由 park 的超时唤醒
+            if (s.holding) continue;
+            if (s.hasWork() || s.closed) return false;
+        }
+        return true;
+    }
+
+    private void park(long nanos) {
+        if (spinNanos > 0) {
+            long until = System.nanoTime() + (nanos > 0 ? Math.min(nanos, spinNanos) : spinNanos);
+            while (running && allEmpty()) {
+                if (System.nanoTime() >= until) break;
+            }
+            if (!allEmpty()) return;
+            if (pendingCount > 0 && System.nanoTime() >= nextFrameAt) return;
+        }
+        parked = true;
+        if (allEmpty() && running) {
+            // 兜底超时，避免极端情况下的唤醒丢失
+            LockSupport.parkNanos(this, nanos > 0 ? nanos : 100_000_000L);
+        }
+        parked = false;
+    }
+
+    /**
+     * 带客户端 ts 的按键/键盘命令：与该会话上一条的客户端间隔在 inputTimingMaxMs 以内、
+     * 而按本机时间还没到时，暂存到会话并推迟，此后该会话的命令都等它注入后再处理。
+     */
+    private void offer(Session s, InputCommand e) {
+        if (inputTimingNanos == 0 || e.clientTs <= 0 || !timed(e.kind)) {
+            handle(s, e);
+            return;
+        }
+        if (s.lastInputTs > 0) {
+            long gap = (long)((e.clientTs - s.lastInputTs) * 1_000_000L);
+            long at = s.lastInputNanos + gap;
+            if (gap > 0 && gap <= inputTimingNanos && at - System.nanoTime() > 0) {
+                s.deferred.copyFrom(e);
+                e.clear();
+                s.holdUntil = at;
+                s.holding = true;
+                return;
+            }
+        }
+        inject(s, e);
+    }
+
+    private void inject(Session s, InputCommand e) {
+        if (timed(e.kind) && e.clientTs > 0) {
+            s.lastInputTs = e.clientTs;
+            s.lastInputNanos = System.nanoTime();
+        }
+        handle(s, e);
+    }
+
+    private static boolean timed(int kind) {
+        return kind == InputCommand.BUTTON || kind == InputCommand.KEY || kind == InputCommand.MODIFIERS;
+    }
+
+    private void handle(Session s, InputCommand e) {
+        if (e.kind != InputCommand.MARK && e.kind != InputCommand.RELEASE && !admit(s)) {
+            // 没有控制权：丢弃输入，但对应消息的延迟标记照常结算
+            s.stats.onDropped();
+            e.clear();
+            return;
+        }
+        switch (e.kind) {
+            case InputCommand.MOVE:
+            case InputCommand.SCROLL:
+            case InputCommand.GESTURE_SCROLL:
+                int mods = e.kind == InputCommand.GESTURE_SCROLL ? e.code : 0;
+                if (pendingKind != e.kind || pendingMods != mods) flushPending();
+                pendingKind = e.kind;
+                pendingMods = mods;
+                pendingX += e.dx;
+                pendingY += e.dy;
+                if (++pendingCount > 1) coalesced.incrementAndGet();
+                break;
+            case InputCommand.BUTTON:
+                flushPending();
+                injector.mouseButton(e.code, e.action);
+                s.trackButton(e.code, e.action);
+                break;
+            case InputCommand.MODIFIERS:
+                flushPending();
+                s.trackModifiers(e.code, e.down);
+                if (text.isBusy()) {
+                    int holder = s.id;
+                    int mask = e.code;
+                    boolean down = e.down;
+                    text.after(() -> {
+                        injector.setModifiers(holder, mask, down);
+                        wake(); // 抬起后的停留由注入线程计时
+                    });
+                } else {
+                    injector.setModifiers(s.id, e.code, e.down);
+                }
+                break;
+            case InputCommand.KEY:
+                flushPending();
+                int code = e.text != null ? injector.resolveKey(e.text) : e.code;
+                s.trackKey(code, e.down);
+                if (text.isBusy()) {
+                    // 文本仍在输入：按键排在文本之后，鼠标事件不受影响
+                    int holder = s.id;
+                    boolean down = e.down;
+                    text.after(() -> injector.keyCode(holder, code, down));
+                } else {
+                    injector.keyCode(s.id, code, e.down);
+                }
+                break;
+            case InputCommand.TEXT:
+                flushPending();
+                text.submit(e.text);
+                break;
+            case InputCommand.RELEASE:
+                if (e.code == InputCommand.RELEASE_GESTURE) {
+                    flushPending();
+                    if (text.isBusy()) text.after(injector::releaseGestureModifiers);
+                    else injector.releaseGestureModifiers();
+                } else if (e.code == InputCommand.RELEASE_MODS ? s.holdsModifiers() : s.holdsInput()) {
+                    System.out.println("注入: " + s.label + " 长时间无输入，释放仍按住的"
+                            + (e.code == InputCommand.RELEASE_MODS ? "修饰键" : "键与按键"));
+                    if (e.code == InputCommand.RELEASE_MODS) releaseMods(s);
+                    else releaseHeld(s);
+                }
+                break;
+            case InputCommand.MARK:
+                if (pendingCount == 0) {
+                    e.stats.onCompleted(e.code, e.recvNanos, e.clientTs, System.nanoTime());
+                } else {
+                    if (markCount > 0) e.stats.onCoalesced();
+                    if (markCount == MAX_PENDING_MARKS) settleMarks();
+                    markStats[markCount] = e.stats;
+                    markType[markCount] = e.code;
+                    markRecv[markCount] = e.recvNanos;
+                    markTs[markCount] = e.clientTs;
+                    markCount++;
+                }
+                break;
+            default:
+                break;
+        }
+        e.clear();
+    }
+
+    /** 仲裁：该会话此刻的输入是否注入。仅注入线程调用。 */
+    private boolean admit(Session s) {
+        long now = System.nanoTime();
+        if (policy == POLICY_MERGED || s == local) {
+            s.lastActiveNanos = now;
+            return true;
+        }
+        if (owner != s) {
+            boolean vacant = owner == null || owner.closed;
+            boolean idle = !vacant && now - owner.lastActiveNanos >= takeoverIdleNanos;
+            boolean sliceOver = policy == POLICY_TIMESLICE && !vacant && now - ownerSince >= sliceNanos;
+            if (!vacant && !idle && !sliceOver && !s.takeoverRequested) return false;
+            if (!vacant) releaseHeld(owner);
+            owner = s;
+            ownerSince = now;
+        }
+        s.takeoverRequested = false;
+        s.lastActiveNanos = now;
+        return true;
+    }
+
+    /**
+     * 释放会话仍按住的键与鼠标按键（断开或失去控制权时）。修饰键按持有者整体清除，
+     * 手势临时按住的修饰键一并抬起，不依赖逐条抬起命令配对。
+     */
+    private void releaseHeld(Session s) {
+        flushPending();
+        injector.releaseModifiers(s.id);
+        injector.releaseGestureModifiers();
+        s.heldMods = 0;
+        if (!s.holdsInput()) return;
+        for (int i = 0; i < s.heldKeyCount; i++) {
+            int code = s.heldKeys[i];
+            if (!KeyMap.isModifier(code)) injector.keyCode(s.id, code, false);
+        }
+        s.heldKeyCount = 0;
+        for (int b = InputInjector.BUTTON_LEFT; b <= InputInjector.BUTTON_RIGHT; b++) {
+            if ((s.heldButtons & (1 << b)) != 0) injector.mouseButton(b, InputInjector.ACTION_UP);
+        }
+        s.heldButtons = 0;
+    }
+
+    /** 只释放修饰键：按掩码按住的，以及作为普通键按下的 Shift/Ctrl/Alt/Meta。 */
+    private void releaseMods(Session s) {
+        flushPending();
+        for (int i = s.heldKeyCount - 1; i >= 0; i--) {
+            if (KeyMap.isModifier(s.heldKeys[i])) s.heldKeys[i] = s.heldKeys[--s.heldKeyCount];
+        }
+        s.heldMods = 0;
+        injector.releaseModifiers(s.id);
+    }
+
+    private void retire(Session s) {
+        releaseHeld(s);
+        if (owner == s) owner = null;
+        unregister(s);
+    }
+
+    private void flushPending() {
+        if (pendingCount == 0) return;
+        int kind = pendingKind;
+        int mods = pendingMods;
+        double x = pendingX;
+        double y = pendingY;
+        pendingKind = 0;
+        pendingMods = 0;
+        pendingX = 0;
+        pendingY = 0;
+        pendingCount = 0;
+        nextFrameAt = System.nanoTime() + frameNanos;
+        if (kind == InputCommand.MOVE) {
+            injector.moveRelative(x, y);
+        } else if (kind == InputCommand.GESTURE_SCROLL && text.isBusy()) {
+            // 文本仍在输入：手势的 Ctrl/Shift 不能落在文本按键上，排到文本之后
+            text.after(() -> {
+                injector.modifiedScroll(mods, x, y);
+                wake();
+            });
+        } else if (kind == InputCommand.GESTURE_SCROLL) {
+            injector.modifiedScroll(mods, x, y);
+        } else {
+            injector.scroll(x, y);
+        }
+        settleMarks();
+    }
+
+    private void settleMarks() {
+        if (markCount == 0) return;
+        long now = System.nanoTime();
+        for (int i = 0; i < markCount; i++) {
+            markStats[i].onCompleted(markType[i], markRecv[i], markTs[i], now);
+            markStats[i] = null;
+        }
+        markCount = 0;
+    }
+
+    private static int resolveSpinUs(AppConfig config) {
+        // 单核上空转只会抢走解码线程的时间
+        if (Runtime.getRuntime().availableProcessors() < 2) return 0;
+        if (config.injectSpinUs > 0) return config.injectSpinUs;
+        return config.lowLatency ? 50 : 0;
+    }
+
+    int getThreadPriority() {
+        return thread.getPriority();
+    }
+
+    long getSpinMicros() {
+        return spinNanos / 1000L;
+    }
+
+    private static int resolveFps(AppConfig config) {
+        if (config.injectFps > 0) return config.injectFps;
+        try {
+            if (!GraphicsEnvironment.isHeadless()) {
+                DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDisplayMode();
+                int hz = mode.getRefreshRate();
+                if (hz != DisplayMode.REFRESH_RATE_UNKNOWN && hz > 0) return hz;
+            }
+        } catch (Throwable ignored) {
+        }
+        return 60;
+    }
+}
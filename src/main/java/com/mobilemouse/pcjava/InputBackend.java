@@ -0,0 +1,71 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 输入注入后端。{@link InputInjector} 负责协议语义（灵敏度、滚动方向、光标跟踪、字符映射），
+ * 后端只负责把最底层的指针/按键/滚轮事件送进系统。
+ * 按 {@code AppConfig.backend} 选择实现：robot / recording / uinput。
+ */
+public interface InputBackend {
+    /** 指针移动只接受相对位移时返回 true，此时不会调用 {@link #mouseMove(int, int)}。 */
+    boolean isRelativePointer();
+
+    /** 移动到屏幕绝对坐标。 */
+    void mouseMove(int x, int y);
+
+    /** 按相对位移移动指针。 */
+    void mouseMoveBy(int dx, int dy);
+
+    /**
+     * 当前真实指针位置，按 {@link DisplayTopology#pack(int, int)} 打包；未知时返回 {@link Long#MIN_VALUE}。
+     */
+    long pointerPosition();
+
+    /** button 取 InputInjector.BUTTON_*。 */
+    void mousePress(int button);
+
+    void mouseRelease(int button);
+
+    /** 垂直滚轮，正值向下（与 Robot.mouseWheel 一致）。 */
+    void mouseWheel(int steps);
+
+    boolean supportsHorizontalWheel();
+
+    /** 水平滚轮，正值向右。 */
+    void mouseWheelHorizontal(int steps);
+
+    /**
+     * 键码按美式键盘的物理键位注入、由系统再按当前布局换算成字符时返回 true（uinput）；
+     * 此时 {@link KeyboardLayout} 改用键位表。Robot 注入的是键码对应的字符，返回 false。
+     */
+    default boolean isPositionalKeys() {
+        return false;
+    }
+
+    /** keyCode 为 AWT KeyEvent.VK_*。 */
+    void keyPress(int keyCode);
+
+    void keyRelease(int keyCode);
+
+    /** 直接注入一段 Unicode 文本；不支持时返回 false，由调用方改走剪贴板粘贴。 */
+    default boolean typeUnicode(String text) {
+        return false;
+    }
+
+    default void close() {
+    }
+
+    static InputBackend create(AppConfig config) {
+        String name = config.backend == null ? "robot" : config.backend.trim().toLowerCase();
+        switch (name) {
+            case "recording":
+                return new RecordingBackend(config.recordingCapacity);
+            case "uinput":
+                return new UinputBackend(config.uinputDevice);
+            case "robot":
+            case "":
+                return new RobotBackend(config);
+            default:
+                throw new IllegalArgumentException("未知的注入后端: " + config.backend);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 注入队列中的一个槽位。对象随 {@link EventRing} 预分配并循环复用，
+ * 所有字段均为基本类型或不可变引用，入队出队不产生额外分配。
+ */
+final class InputCommand {
+    static final int MOVE = 1;
+    static final int SCROLL = 2;
+    static final int BUTTON = 3;
+    static final int KEY = 4;
+    static final int MODIFIERS = 5;
+    static final int TEXT = 6;
+    static final int MARK = 7;     // 一条消息的所有注入命令已入队，用于延迟统计
+    static final int RELEASE = 8;  // 超时释放该会话仍按住的输入（code 为 RELEASE_*）
+    static final int GESTURE_SCROLL = 9;  // 带修饰键的手势滚动（code 为修饰键掩码）
+
+    static final int RELEASE_ALL = 0;
+    static final int RELEASE_MODS = 1;
+    static final int RELEASE_GESTURE = 2;  // 手势结束，抬起手势临时按住的修饰键
+
+    static final int MOD_CTRL = 1;
+    static final int MOD_ALT = 1 << 1;
+    static final int MOD_SHIFT = 1 << 2;
+    static final int MOD_META = 1 << 3;
+
+    int kind;
+    double dx;
+    double dy;
+    int code;      // BUTTON: 按键编号；MODIFIERS / GESTURE_SCROLL: 修饰键掩码；KEY: AWT 键码（text 为空时）；MARK: 消息类型
+    int action;    // BUTTON: InputInjector.ACTION_*
+    boolean down;  // KEY / MODIFIERS: 按下或抬起
+    String text;   // KEY: 键名；TEXT: 文本
+    MessageStats stats;  // MARK: 统计归属
+    long recvNanos;      // MARK: 收到帧的时刻
+    double clientTs;     // BUTTON / KEY / MODIFIERS: 客户端 ts（毫秒）；MARK: 校正到本机时钟的发送时刻；无则为 0
+
+    void copyFrom(InputCommand o) {
+        kind = o.kind;
+        dx = o.dx;
+        dy = o.dy;
+        code = o.code;
+        action = o.action;
+        down = o.down;
+        text = o.text;
+        stats = o.stats;
+        recvNanos = o.recvNanos;
+        clientTs = o.clientTs;
+    }
+
+    void clear() {
+        kind = 0;
+        text = null;
+        stats = null;
+    }
+}
@@ -1,202 +1,390 @@
 package com.mobilemouse.pcjava;
 
-import java.awt.*;
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
-import java.awt.event.InputEvent;
+import java.awt.datatransfer.Transferable;
 import java.awt.event.KeyEvent;
 
 public final class InputInjector {
-    private final Robot robot;
-    private final AppConfig config = AppConfig.loadOrCreate();
+    private final InputBackend backend;
+    private final AppConfig config;
+    private final DisplayTopology topology;
+    private final long resyncNanos;
+    private final PointerCurve curve;
+    private final KeyboardLayout layout;
+    private final ModifierTracker modifiers;
+
+    // 每轴小数累加器，仅由注入线程访问
+    private final StepAccumulator accX = new StepAccumulator();
+    private final StepAccumulator accY = new StepAccumulator();
+    private final StepAccumulator wheelX = new StepAccumulator();
+    private final StepAccumulator wheelY = new StepAccumulator();
+
+    // 本地跟踪的光标位置，仅由注入线程访问
+    private int cursorX, cursorY;
+    private boolean cursorKnown = false;
+    private long lastMoveNanos = 0;
+    private long lastWheelNanos = 0;
 
     public InputInjector() {
-        try {
-            robot = new Robot();
-            robot.setAutoWaitForIdle(true);
-            robot.setAutoDelay(2);
-        } catch (AWTException e) {
-            throw new RuntimeException("无法初始化输入注入: " + e.getMessage(), e);
-        }
+        this(AppConfig.loadOrCreate());
+    }
+
+    public InputInjector(AppConfig config) {
+        this(config, InputBackend.create(config));
     }
 
-    public void moveRelative(int dx, int dy) {
+    public InputInjector(AppConfig config, InputBackend backend) {
+        this.config = config;
+        this.backend = backend;
+        // 相对指针后端不需要屏幕坐标，也就不需要显示器布局
+        this.topology = backend.isRelativePointer() ? null : new DisplayTopology(config.displayPollMs);
+        this.resyncNanos = Math.max(0, config.cursorResyncMs) * 1_000_000L;
+        this.curve = new PointerCurve(config);
+        this.layout = KeyboardLayout.resolve(config.keyboardLayout, backend.isPositionalKeys());
+        this.modifiers = new ModifierTracker(backend, config.modifierLingerMs);
+    }
+
+    public InputBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * 相对移动。dx/dy 可为小数：先按加速曲线与灵敏度换算，再经每轴累加器取整，
+     * 不足一个像素的部分留到下一次，高频小位移不会被舍入吃掉。
+     */
+    public void moveRelative(double dx, double dy) {
         if (dx == 0 && dy == 0) return;
-        double s = config.sensitivity <= 0 ? 1.0 : config.sensitivity;
-        Point p = MouseInfo.getPointerInfo().getLocation();
-        int nx = (int)Math.round(p.x + dx * s);
-        int ny = (int)Math.round(p.y + dy * s);
-        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
-        nx = Math.max(0, Math.min(nx, screen.width - 1));
-        ny = Math.max(0, Math.min(ny, screen.height - 1));
-        Rectangle vb = getVirtualBounds();
-        nx = Math.max(vb.x, Math.min(nx, vb.x + vb.width - 1));
-        ny = Math.max(vb.y, Math.min(ny, vb.y + vb.height - 1));
-         robot.mouseMove(nx, ny);
+        long now = System.nanoTime();
+        boolean idle = now - lastMoveNanos > resyncNanos;
+        if (idle) {
+            accX.reset();
+            accY.reset();
+        }
+        double k;
+        if (curve.isLinear()) {
+            k = curve.factor(0);
+        } else {
+            // 速度按两次注入之间的间隔估算；空闲后的第一次按一帧（约 16ms）计
+            double dtMs = idle ? 16.0 : Math.max(1.0, (now - lastMoveNanos) / 1_000_000.0);
+            k = curve.factor(Math.sqrt(dx * dx + dy * dy) / dtMs);
+        }
+        int ix = accX.add(dx * k);
+        int iy = accY.add(dy * k);
+        if (ix == 0 && iy == 0) {
+            lastMoveNanos = now;
+            return;
+        }
+        if (topology == null) {
+            lastMoveNanos = now;
+            backend.mouseMoveBy(ix, iy);
+            return;
+        }
+        // 连续移动期间使用本地跟踪的位置；空闲一段时间后再与真实指针同步（用户可能动了物理鼠标）
+        if (!cursorKnown || idle) {
+            syncCursor();
+        }
+        int nx = cursorX + ix;
+        int ny = cursorY + iy;
+        long p = topology.clamp(nx, ny);
+        cursorX = DisplayTopology.unpackX(p);
+        cursorY = DisplayTopology.unpackY(p);
+        // 顶到屏幕边缘时丢弃该轴余数，避免反向移动时先“还债”
+        if (cursorX != nx) accX.reset();
+        if (cursorY != ny) accY.reset();
+        lastMoveNanos = now;
+        backend.mouseMove(cursorX, cursorY);
     }
 
-    public void mouseButton(String button, String action) {
-        int mask = InputEvent.BUTTON1_DOWN_MASK;
-        switch (button) {
-            case "right": mask = InputEvent.BUTTON3_DOWN_MASK; break;
-            case "middle": mask = InputEvent.BUTTON2_DOWN_MASK; break;
-            default: mask = InputEvent.BUTTON1_DOWN_MASK; break;
+    private void syncCursor() {
+        long p = backend.pointerPosition();
+        if (p != Long.MIN_VALUE) {
+            cursorX = DisplayTopology.unpackX(p);
+            cursorY = DisplayTopology.unpackY(p);
+            // 指针落在已知布局之外，说明显示器配置已变化
+            if (!topology.contains(cursorX, cursorY)) topology.refresh();
+        } else {
+            DisplayTopology.Layout l = topology.layout();
+            cursorX = (l.minX + l.maxX) / 2;
+            cursorY = (l.minY + l.maxY) / 2;
         }
-        if ("down".equals(action)) {
-            robot.mousePress(mask);
-        } else if ("up".equals(action)) {
-            robot.mouseRelease(mask);
-        } else if ("click".equals(action)) {
-            robot.mousePress(mask);
-            robot.mouseRelease(mask);
+        cursorKnown = true;
+    }
+
+    public static final int BUTTON_LEFT = 1;
+    public static final int BUTTON_MIDDLE = 2;
+    public static final int BUTTON_RIGHT = 3;
+
+    public static final int ACTION_NONE = -1;
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_CLICK = 2;
+
+    public static int buttonOf(String button) {
+        if ("right".equals(button)) return BUTTON_RIGHT;
+        if ("middle".equals(button)) return BUTTON_MIDDLE;
+        return BUTTON_LEFT;
+    }
+
+    public static int actionOf(String action) {
+        if ("down".equals(action)) return ACTION_DOWN;
+        if ("up".equals(action)) return ACTION_UP;
+        if ("click".equals(action)) return ACTION_CLICK;
+        return ACTION_NONE;
+    }
+
+    /** 抬起所有仍按住的修饰键并释放后端；由注入线程在退出前调用。 */
+    public void close() {
+        modifiers.releaseAll();
+        if (topology != null) topology.shutdown();
+        backend.close();
+    }
+
+    public String getKeyboardLayout() {
+        return layout.name;
+    }
+
+    public AppConfig getConfig() {
+        return config;
+    }
+
+    public void mouseButton(String button, String action) {
+        mouseButton(buttonOf(button), actionOf(action));
+    }
+
+    public void mouseButton(int button, int action) {
+        if (action != ACTION_UP) modifiers.endTransient();
+        if (action == ACTION_DOWN) {
+            backend.mousePress(button);
+        } else if (action == ACTION_UP) {
+            backend.mouseRelease(button);
+        } else if (action == ACTION_CLICK) {
+            backend.mousePress(button);
+            backend.mouseRelease(button);
         }
     }
 
-    public void scroll(int dx, int dy) {
-        int stepsY = dy;
+    /**
+     * 滚动，单位为滚轮格，可为小数；乘以 scrollSpeed 后累加，凑满整格才注入。
+     */
+    public void scroll(double dx, double dy) {
+        modifiers.endTransient();
+        wheel(dx, dy);
+    }
+
+    /**
+     * 带修饰键的手势滚动（pinch 的 Ctrl、rotate/roll 的 Shift）：修饰键在连续帧之间保持按住，
+     * 与显式按住的修饰键合并，停顿或手势结束后才抬起。
+     */
+    public void modifiedScroll(int mods, double dx, double dy) {
+        modifiers.useTransient(mods, System.nanoTime());
+        wheel(dx, dy);
+        if (!modifiers.lingers()) modifiers.endTransient();
+    }
+
+    private void wheel(double dx, double dy) {
         double speed = config.scrollSpeed <= 0 ? 1.0 : config.scrollSpeed;
-        if (config.invertScroll) stepsY = -stepsY;
-        stepsY = (int)Math.round(stepsY * speed);
+        double y = config.invertScroll ? -dy : dy;
+        // 与移动相同：停顿超过 cursorResyncMs 后丢弃上一段滚动不足一格的余量，不会隔很久多出一格
+        long now = System.nanoTime();
+        if (now - lastWheelNanos > resyncNanos) {
+            wheelX.reset();
+            wheelY.reset();
+        }
+        lastWheelNanos = now;
+        int stepsY = wheelY.add(y * speed);
         if (stepsY != 0) {
-            robot.mouseWheel(stepsY);
+            backend.mouseWheel(stepsY);
+        }
+        // Robot 后端不支持水平滚动，忽略 dx；支持的后端（如 uinput）直接注入水平滚轮
+        if (dx != 0 && backend.supportsHorizontalWheel()) {
+            int stepsX = wheelX.add(dx * speed);
+            if (stepsX != 0) backend.mouseWheelHorizontal(stepsX);
         }
-        // Java AWT Robot 不支持水平滚动；如需模拟，可考虑按住 Shift 再垂直滚动。
-        // 这里保持简单实现：忽略 dx。
     }
 
     public void setModifiers(boolean ctrl, boolean alt, boolean shift, boolean meta, boolean press) {
-        if (press) {
-            if (ctrl) robot.keyPress(KeyEvent.VK_CONTROL);
-            if (alt) robot.keyPress(KeyEvent.VK_ALT);
-            if (shift) robot.keyPress(KeyEvent.VK_SHIFT);
-            if (meta) robot.keyPress(KeyEvent.VK_META);
-        } else {
-            if (meta) robot.keyRelease(KeyEvent.VK_META);
-            if (shift) robot.keyRelease(KeyEvent.VK_SHIFT);
-            if (alt) robot.keyRelease(KeyEvent.VK_ALT);
-            if (ctrl) robot.keyRelease(KeyEvent.VK_CONTROL);
-        }
+        int mask = (ctrl ? InputCommand.MOD_CTRL : 0) | (alt ? InputCommand.MOD_ALT : 0)
+                | (shift ? InputCommand.MOD_SHIFT : 0) | (meta ? InputCommand.MOD_META : 0);
+        setModifiers(0, mask, press);
+    }
+
+    /**
+     * 持有者（会话编号）按下或抬起 key_event 的 mod，按引用计数合并；抬起后停留 modifierLingerMs，
+     * 见 {@link ModifierTracker#holdLingering}。
+     */
+    public void setModifiers(int holder, int mask, boolean press) {
+        if (mask != 0) modifiers.holdLingering(holder, mask, press, System.nanoTime());
+    }
+
+    /** 清除持有者按住的全部修饰键（断开、失去控制权或超时）。 */
+    public void releaseModifiers(int holder) {
+        modifiers.releaseHolder(holder);
+    }
+
+    /** 手势结束：抬起手势临时按住的修饰键。 */
+    public void releaseGestureModifiers() {
+        modifiers.endTransient();
+    }
+
+    /** 注入线程：停顿超过 modifierLingerMs 时抬起临时按住的修饰键；返回距下次检查的纳秒数，0 表示无需检查。 */
+    public long releaseIdleModifiers(long now) {
+        return modifiers.releaseIdle(now);
     }
 
     public void keyEvent(String key, boolean isDown) {
-        Integer code = KeyMap.toKeyCode(key);
-        if (code == null) return;
-        if (isDown) robot.keyPress(code);
-        else robot.keyRelease(code);
+        keyCode(resolveKey(key), isDown);
+    }
+
+    /**
+     * 按键名转换为键码；单个符号字符（如 "!"、";"）按当前布局找到所在的键，Shift 由客户端的修饰键给出。
+     * 键位后端下单个字符（含字母）一律先查布局：字符在非美式布局上的键位与同名键码不同。
+     */
+    public int resolveKey(String key) {
+        if (backend.isPositionalKeys() && key != null && key.length() == 1) {
+            int st = layout.stroke(key.charAt(0));
+            if (st >= 0) return st & KeyboardLayout.VK_MASK;
+        }
+        int code = KeyMap.toKeyCode(key);
+        if (code == KeyEvent.VK_UNDEFINED && key != null && key.length() == 1) {
+            int st = layout.stroke(key.charAt(0));
+            if (st >= 0) code = st & KeyboardLayout.VK_MASK;
+        }
+        return code;
+    }
+
+    public void keyCode(int code, boolean isDown) {
+        keyCode(0, code, isDown);
     }
 
+    /** 作为普通键按下的 Ctrl/Alt/Shift/Meta 同样按持有者计数；其他键按下前先抬起临时按住的修饰键。 */
+    public void keyCode(int holder, int code, boolean isDown) {
+        if (code == KeyEvent.VK_UNDEFINED) return;
+        int bit = ModifierTracker.bitOf(code);
+        if (bit != 0) {
+            modifiers.hold(holder, bit, isDown);
+            return;
+        }
+        if (isDown) {
+            modifiers.endTransient();
+            backend.keyPress(code);
+        } else {
+            backend.keyRelease(code);
+        }
+    }
+
+    /**
+     * 输入一段文本。先按退格切分成若干段再规划：短且全部可直接敲出的段逐键输入，
+     * 较长或含不可敲字符（中文、emoji 等）的段整体走一次粘贴，避免在按键与粘贴之间来回切换。
+     */
     public void typeText(String text) {
         if (text == null || text.isEmpty()) return;
-        StringBuilder bufUnknown = new StringBuilder();
-        for (char ch : text.toCharArray()) {
-            Stroke st = mapChar(ch);
-            if (st == null) {
-                bufUnknown.append(ch);
-                continue;
-            }
-            if (bufUnknown.length() > 0) {
-                paste(bufUnknown.toString());
-                bufUnknown.setLength(0);
-            }
-            typeKey(st.code, st.shift);
-        }
-        if (bufUnknown.length() > 0) {
-            paste(bufUnknown.toString());
-        }
-    }
-
-    private static final class Stroke {
-        final int code; final boolean shift;
-        Stroke(int code, boolean shift) { this.code = code; this.shift = shift; }
-    }
-
-
-    private Stroke mapChar(char ch) {
-        switch (ch) {
-            case '\n': case '\r': return new Stroke(KeyEvent.VK_ENTER, false);
-            case '\t': return new Stroke(KeyEvent.VK_TAB, false);
-            case '\b': return new Stroke(KeyEvent.VK_BACK_SPACE, false);
-            case ' ': return new Stroke(KeyEvent.VK_SPACE, false);
-            case ',': return new Stroke(KeyEvent.VK_COMMA, false);
-            case '.': return new Stroke(KeyEvent.VK_PERIOD, false);
-            case '/': return new Stroke(KeyEvent.VK_SLASH, false);
-            case '-': return new Stroke(KeyEvent.VK_MINUS, false);
-            case '=': return new Stroke(KeyEvent.VK_EQUALS, false);
-            case '[': return new Stroke(KeyEvent.VK_OPEN_BRACKET, false);
-            case ']': return new Stroke(KeyEvent.VK_CLOSE_BRACKET, false);
-            case ';': return new Stroke(KeyEvent.VK_SEMICOLON, false);
-            case '\'': return new Stroke(KeyEvent.VK_QUOTE, false);
-            case '\\': return new Stroke(KeyEvent.VK_BACK_SLASH, false);
-            case '`': return new Stroke(KeyEvent.VK_BACK_QUOTE, false);
-            case '!': return new Stroke(KeyEvent.VK_1, true);
-            case '@': return new Stroke(KeyEvent.VK_2, true);
-            case '#': return new Stroke(KeyEvent.VK_3, true);
-            case '$': return new Stroke(KeyEvent.VK_4, true);
-            case '%': return new Stroke(KeyEvent.VK_5, true);
-            case '^': return new Stroke(KeyEvent.VK_6, true);
-            case '&': return new Stroke(KeyEvent.VK_7, true);
-            case '*': return new Stroke(KeyEvent.VK_8, true);
-            case '(': return new Stroke(KeyEvent.VK_9, true);
-            case ')': return new Stroke(KeyEvent.VK_0, true);
-            case '_': return new Stroke(KeyEvent.VK_MINUS, true);
-            case '+': return new Stroke(KeyEvent.VK_EQUALS, true);
-            case '{': return new Stroke(KeyEvent.VK_OPEN_BRACKET, true);
-            case '}': return new Stroke(KeyEvent.VK_CLOSE_BRACKET, true);
-            case ':': return new Stroke(KeyEvent.VK_SEMICOLON, true);
-            case '"': return new Stroke(KeyEvent.VK_QUOTE, true);
-            case '<': return new Stroke(KeyEvent.VK_COMMA, true);
-            case '>': return new Stroke(KeyEvent.VK_PERIOD, true);
-            case '?': return new Stroke(KeyEvent.VK_SLASH, true);
-            case '|': return new Stroke(KeyEvent.VK_BACK_SLASH, true);
-            case '~': return new Stroke(KeyEvent.VK_BACK_QUOTE, true);
-            default:
-                if (ch >= 'a' && ch <= 'z') {
-                    return new Stroke(KeyEvent.VK_A + (ch - 'a'), false);
-                }
-                if (ch >= 'A' && ch <= 'Z') {
-                    return new Stroke(KeyEvent.VK_A + (ch - 'A'), true);
-                }
-                if (ch >= '0' && ch <= '9') {
-                    return new Stroke(KeyEvent.VK_0 + (ch - '0'), false);
-                }
-                return null;
+        modifiers.endTransient();
+        int n = text.length();
+        int start = 0;
+        for (int i = 0; i <= n; i++) {
+            if (i < n && text.charAt(i) != '\b') continue;
+            if (i > start) typeRun(text, start, i);
+            if (i < n) typeKey(KeyEvent.VK_BACK_SPACE, false);
+            start = i + 1;
+        }
+    }
+
+    private void typeRun(String text, int start, int end) {
+        boolean paste = end - start >= Math.max(1, config.textPasteMinChars);
+        for (int i = start; !paste && i < end; i++) {
+            if (layout.stroke(text.charAt(i)) < 0) paste = true;
+        }
+        if (paste) {
+            paste(start == 0 && end == text.length() ? text : text.substring(start, end));
+            return;
+        }
+        // 关闭时文本线程被中断：停在当前字符，不与随后的整体释放交错
+        for (int i = start; i < end && !Thread.currentThread().isInterrupted(); i++) {
+            int st = layout.stroke(text.charAt(i));
+            typeKey(st & KeyboardLayout.VK_MASK, (st & KeyboardLayout.SHIFT) != 0);
         }
     }
 
     private void typeKey(int code, boolean shift) {
-        if (shift) robot.keyPress(KeyEvent.VK_SHIFT);
-        robot.keyPress(code);
-        robot.keyRelease(code);
-        if (shift) robot.keyRelease(KeyEvent.VK_SHIFT);
+        if (shift) modifiers.hold(ModifierTracker.TEXT, InputCommand.MOD_SHIFT, true);
+        backend.keyPress(code);
+        backend.keyRelease(code);
+        if (shift) modifiers.hold(ModifierTracker.TEXT, InputCommand.MOD_SHIFT, false);
     }
 
+    /**
+     * 粘贴文本：后端能直接输入 Unicode 时不经过剪贴板；否则先保存用户剪贴板，
+     * 按 textChunkChars 分块写入剪贴板并 Ctrl+V，结束后恢复原内容。
+     */
     private void paste(String text) {
         if (text == null || text.isEmpty()) return;
-        StringSelection sel = new StringSelection(text);
-        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(sel, sel);
-        robot.keyPress(KeyEvent.VK_CONTROL);
-        robot.keyPress(KeyEvent.VK_V);
-        robot.keyRelease(KeyEvent.VK_V);
-        robot.keyRelease(KeyEvent.VK_CONTROL);
-    }
-
-    private Rectangle getVirtualBounds() {
-        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        GraphicsDevice[] devices = ge.getScreenDevices();
-        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
-        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
-        for (GraphicsDevice gd : devices) {
-            for (GraphicsConfiguration gc : gd.getConfigurations()) {
-                Rectangle b = gc.getBounds();
-                minX = Math.min(minX, b.x);
-                minY = Math.min(minY, b.y);
-                maxX = Math.max(maxX, b.x + b.width);
-                maxY = Math.max(maxY, b.y + b.height);
+        if (backend.typeUnicode(text)) return;
+        Clipboard cb = Toolkit.getDefaultToolkit().getSystemClipboard();
+        Transferable saved = config.textRestoreClipboard ? readClipboard(cb) : null;
+        int chunk = Math.max(1, config.textChunkChars);
+        int n = text.length();
+        try {
+            for (int start = 0; start < n && !Thread.currentThread().isInterrupted(); ) {
+                int end = Math.min(n, start + chunk);
+                // 不把代理对拆到两块里
+                if (end < n && end - start > 1 && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+                if (start > 0) settle();
+                writeClipboard(cb, new StringSelection(start == 0 && end == n ? text : text.substring(start, end)));
+                modifiers.hold(ModifierTracker.TEXT, InputCommand.MOD_CTRL, true);
+                backend.keyPress(KeyEvent.VK_V);
+                backend.keyRelease(KeyEvent.VK_V);
+                modifiers.hold(ModifierTracker.TEXT, InputCommand.MOD_CTRL, false);
+                start = end;
+            }
+        } finally {
+            if (saved != null) {
+                // 目标程序异步读取剪贴板，等它取走后再恢复
+                settle();
+                writeClipboard(cb, saved);
             }
         }
-        if (minX == Integer.MAX_VALUE) {
-            Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
-            return new Rectangle(0, 0, screen.width, screen.height);
+    }
+
+    private void settle() {
+        if (config.textPasteSettleMs <= 0) return;
+        try {
+            Thread.sleep(config.textPasteSettleMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Transferable readClipboard(Clipboard cb) {
+        for (int i = 0; i < 3; i++) {
+            try {
+                return cb.getContents(null);
+            } catch (IllegalStateException busy) {
+                sleepQuietly(10);
+            }
+        }
+        return null;
+    }
+
+    /** 剪贴板可能暂时被其他程序占用（Windows 上常见），稍等重试。 */
+    private static void writeClipboard(Clipboard cb, Transferable t) {
+        for (int i = 0; ; i++) {
+            try {
+                cb.setContents(t, null);
+                return;
+            } catch (IllegalStateException busy) {
+                if (i >= 4) throw busy;
+                sleepQuietly(10);
+            }
+        }
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
     }
-}
\ No newline at end of file
+}
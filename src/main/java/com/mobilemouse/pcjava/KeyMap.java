@@ -2,28 +2,250 @@ package com.mobilemouse.pcjava;
 
 import java.awt.event.KeyEvent;
 
+/**
+ * 按键名到 AWT 键码的查表。类加载时一次性建好：W3C KeyboardEvent.key 与 KeyboardEvent.code
+ * 两套名称放进同一张开放寻址表（按 String 自带的 hashCode 定位），DOM keyCode 用数组直接索引。
+ * 查找只做哈希与 equals，不分配对象；未知返回 {@link KeyEvent#VK_UNDEFINED}。
+ */
 public final class KeyMap {
-    public static Integer toKeyCode(String key) {
-        if (key == null || key.isEmpty()) return null;
-        switch (key) {
-            case "Enter": return KeyEvent.VK_ENTER;
-            case "Escape": return KeyEvent.VK_ESCAPE;
-            case "Backspace": return KeyEvent.VK_BACK_SPACE;
-            case "Tab": return KeyEvent.VK_TAB;
-            case "Space": return KeyEvent.VK_SPACE;
-            case "ArrowLeft": return KeyEvent.VK_LEFT;
-            case "ArrowUp": return KeyEvent.VK_UP;
-            case "ArrowRight": return KeyEvent.VK_RIGHT;
-            case "ArrowDown": return KeyEvent.VK_DOWN;
-            case "Delete": return KeyEvent.VK_DELETE;
+    /**
+     * AWT 未定义的媒体/浏览器键使用的私有键码区间（高于 16 位、低于 AWT 扩展键码）。
+     * Robot 后端无法注入这些键，会忽略；uinput 后端映射为对应的 evdev 键。
+     */
+    public static final int VK_EXTRA_BASE = 0x100000;
+    public static final int VK_AUDIO_VOLUME_MUTE = VK_EXTRA_BASE + 1;
+    public static final int VK_AUDIO_VOLUME_DOWN = VK_EXTRA_BASE + 2;
+    public static final int VK_AUDIO_VOLUME_UP = VK_EXTRA_BASE + 3;
+    public static final int VK_MEDIA_PLAY_PAUSE = VK_EXTRA_BASE + 4;
+    public static final int VK_MEDIA_STOP = VK_EXTRA_BASE + 5;
+    public static final int VK_MEDIA_TRACK_NEXT = VK_EXTRA_BASE + 6;
+    public static final int VK_MEDIA_TRACK_PREVIOUS = VK_EXTRA_BASE + 7;
+    public static final int VK_BROWSER_BACK = VK_EXTRA_BASE + 8;
+    public static final int VK_BROWSER_FORWARD = VK_EXTRA_BASE + 9;
+    public static final int VK_BROWSER_REFRESH = VK_EXTRA_BASE + 10;
+    public static final int VK_BROWSER_HOME = VK_EXTRA_BASE + 11;
+    public static final int VK_BROWSER_SEARCH = VK_EXTRA_BASE + 12;
+
+    private static final int MASK = (1 << 10) - 1;
+    private static final String[] NAMES = new String[MASK + 1];
+    private static final int[] CODES = new int[MASK + 1];
+    private static final int[] DOM = new int[256];
+
+    static {
+        // 编辑与导航
+        put(KeyEvent.VK_ENTER, "Enter", "NumpadEnter");
+        put(KeyEvent.VK_TAB, "Tab");
+        put(KeyEvent.VK_SPACE, " ", "Space", "Spacebar");
+        put(KeyEvent.VK_BACK_SPACE, "Backspace");
+        put(KeyEvent.VK_ESCAPE, "Escape", "Esc");
+        put(KeyEvent.VK_DELETE, "Delete", "Del");
+        put(KeyEvent.VK_INSERT, "Insert");
+        put(KeyEvent.VK_HOME, "Home");
+        put(KeyEvent.VK_END, "End");
+        put(KeyEvent.VK_PAGE_UP, "PageUp");
+        put(KeyEvent.VK_PAGE_DOWN, "PageDown");
+        put(KeyEvent.VK_LEFT, "ArrowLeft", "Left");
+        put(KeyEvent.VK_UP, "ArrowUp", "Up");
+        put(KeyEvent.VK_RIGHT, "ArrowRight", "Right");
+        put(KeyEvent.VK_DOWN, "ArrowDown", "Down");
+        // 修饰键与锁定键
+        put(KeyEvent.VK_SHIFT, "Shift", "ShiftLeft", "ShiftRight");
+        put(KeyEvent.VK_CONTROL, "Control", "ControlLeft", "ControlRight");
+        put(KeyEvent.VK_ALT, "Alt", "AltLeft", "AltRight");
+        put(KeyEvent.VK_ALT_GRAPH, "AltGraph");
+        put(KeyEvent.VK_META, "Meta", "MetaLeft", "MetaRight", "OS", "OSLeft", "OSRight", "Super");
+        put(KeyEvent.VK_CAPS_LOCK, "CapsLock");
+        put(KeyEvent.VK_NUM_LOCK, "NumLock");
+        put(KeyEvent.VK_SCROLL_LOCK, "ScrollLock");
+        put(KeyEvent.VK_PAUSE, "Pause");
+        put(KeyEvent.VK_PRINTSCREEN, "PrintScreen");
+        put(KeyEvent.VK_CONTEXT_MENU, "ContextMenu", "Apps");
+        // 功能键
+        for (int i = 1; i <= 12; i++) put(KeyEvent.VK_F1 + i - 1, "F" + i);
+        for (int i = 13; i <= 24; i++) put(KeyEvent.VK_F13 + i - 13, "F" + i);
+        // 字母与数字：key 取值与 code 取值
+        for (char c = 'A'; c <= 'Z'; c++) {
+            put(c, String.valueOf(c), String.valueOf(Character.toLowerCase(c)), "Key" + c);
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            put(c, String.valueOf(c), "Digit" + c);
+            put(KeyEvent.VK_NUMPAD0 + (c - '0'), "Numpad" + c);
+        }
+        // 小键盘运算键
+        put(KeyEvent.VK_MULTIPLY, "NumpadMultiply", "Multiply");
+        put(KeyEvent.VK_ADD, "NumpadAdd", "Add");
+        put(KeyEvent.VK_SUBTRACT, "NumpadSubtract", "Subtract");
+        put(KeyEvent.VK_DECIMAL, "NumpadDecimal", "Decimal");
+        put(KeyEvent.VK_DIVIDE, "NumpadDivide", "Divide");
+        put(KeyEvent.VK_SEPARATOR, "NumpadComma", "Separator");
+        put(KeyEvent.VK_EQUALS, "NumpadEqual");
+        // 主键区符号键（code 取值，按物理位置，与布局无关）
+        put(KeyEvent.VK_MINUS, "Minus");
+        put(KeyEvent.VK_EQUALS, "Equal");
+        put(KeyEvent.VK_OPEN_BRACKET, "BracketLeft");
+        put(KeyEvent.VK_CLOSE_BRACKET, "BracketRight");
+        put(KeyEvent.VK_BACK_SLASH, "Backslash");
+        put(KeyEvent.VK_SEMICOLON, "Semicolon");
+        put(KeyEvent.VK_QUOTE, "Quote");
+        put(KeyEvent.VK_BACK_QUOTE, "Backquote");
+        put(KeyEvent.VK_COMMA, "Comma");
+        put(KeyEvent.VK_PERIOD, "Period");
+        put(KeyEvent.VK_SLASH, "Slash");
+        put(KeyEvent.VK_LESS, "IntlBackslash");
+        // 输入法相关
+        put(KeyEvent.VK_CONVERT, "Convert");
+        put(KeyEvent.VK_NONCONVERT, "NonConvert");
+        put(KeyEvent.VK_KANA, "KanaMode");
+        put(KeyEvent.VK_KANJI, "KanjiMode");
+        put(KeyEvent.VK_ALL_CANDIDATES, "AllCandidates");
+        put(KeyEvent.VK_CODE_INPUT, "CodeInput");
+        put(KeyEvent.VK_HELP, "Help");
+        put(KeyEvent.VK_UNDO, "Undo");
+        put(KeyEvent.VK_AGAIN, "Again", "Redo");
+        put(KeyEvent.VK_COPY, "Copy");
+        put(KeyEvent.VK_CUT, "Cut");
+        put(KeyEvent.VK_PASTE, "Paste");
+        put(KeyEvent.VK_FIND, "Find");
+        // 媒体与浏览器键
+        put(VK_AUDIO_VOLUME_MUTE, "AudioVolumeMute", "VolumeMute");
+        put(VK_AUDIO_VOLUME_DOWN, "AudioVolumeDown", "VolumeDown");
+        put(VK_AUDIO_VOLUME_UP, "AudioVolumeUp", "VolumeUp");
+        put(VK_MEDIA_PLAY_PAUSE, "MediaPlayPause");
+        put(VK_MEDIA_STOP, "MediaStop");
+        put(VK_MEDIA_TRACK_NEXT, "MediaTrackNext");
+        put(VK_MEDIA_TRACK_PREVIOUS, "MediaTrackPrevious");
+        put(VK_BROWSER_BACK, "BrowserBack");
+        put(VK_BROWSER_FORWARD, "BrowserForward");
+        put(VK_BROWSER_REFRESH, "BrowserRefresh");
+        put(VK_BROWSER_HOME, "BrowserHome");
+        put(VK_BROWSER_SEARCH, "BrowserSearch");
+
+        // DOM keyCode（二进制协议）
+        dom(8, KeyEvent.VK_BACK_SPACE);
+        dom(9, KeyEvent.VK_TAB);
+        dom(13, KeyEvent.VK_ENTER);
+        dom(16, KeyEvent.VK_SHIFT);
+        dom(17, KeyEvent.VK_CONTROL);
+        dom(18, KeyEvent.VK_ALT);
+        dom(19, KeyEvent.VK_PAUSE);
+        dom(20, KeyEvent.VK_CAPS_LOCK);
+        dom(27, KeyEvent.VK_ESCAPE);
+        dom(32, KeyEvent.VK_SPACE);
+        dom(33, KeyEvent.VK_PAGE_UP);
+        dom(34, KeyEvent.VK_PAGE_DOWN);
+        dom(35, KeyEvent.VK_END);
+        dom(36, KeyEvent.VK_HOME);
+        dom(37, KeyEvent.VK_LEFT);
+        dom(38, KeyEvent.VK_UP);
+        dom(39, KeyEvent.VK_RIGHT);
+        dom(40, KeyEvent.VK_DOWN);
+        dom(44, KeyEvent.VK_PRINTSCREEN);
+        dom(45, KeyEvent.VK_INSERT);
+        dom(46, KeyEvent.VK_DELETE);
+        for (int c = '0'; c <= '9'; c++) dom(c, c);
+        for (int c = 'A'; c <= 'Z'; c++) dom(c, c);
+        dom(91, KeyEvent.VK_META);
+        dom(92, KeyEvent.VK_META);
+        dom(93, KeyEvent.VK_CONTEXT_MENU);
+        for (int i = 0; i <= 9; i++) dom(96 + i, KeyEvent.VK_NUMPAD0 + i);
+        dom(106, KeyEvent.VK_MULTIPLY);
+        dom(107, KeyEvent.VK_ADD);
+        dom(108, KeyEvent.VK_SEPARATOR);
+        dom(109, KeyEvent.VK_SUBTRACT);
+        dom(110, KeyEvent.VK_DECIMAL);
+        dom(111, KeyEvent.VK_DIVIDE);
+        for (int i = 0; i < 12; i++) dom(112 + i, KeyEvent.VK_F1 + i);
+        for (int i = 0; i < 12; i++) dom(124 + i, KeyEvent.VK_F13 + i);
+        dom(144, KeyEvent.VK_NUM_LOCK);
+        dom(145, KeyEvent.VK_SCROLL_LOCK);
+        dom(166, VK_BROWSER_BACK);
+        dom(167, VK_BROWSER_FORWARD);
+        dom(168, VK_BROWSER_REFRESH);
+        dom(170, VK_BROWSER_SEARCH);
+        dom(172, VK_BROWSER_HOME);
+        // 音量键：Chrome 为 173-175，Firefox 为 181-183（Firefox 的 173 是减号，此处按 Chrome 处理）
+        dom(173, VK_AUDIO_VOLUME_MUTE);
+        dom(174, VK_AUDIO_VOLUME_DOWN);
+        dom(175, VK_AUDIO_VOLUME_UP);
+        dom(176, VK_MEDIA_TRACK_NEXT);
+        dom(177, VK_MEDIA_TRACK_PREVIOUS);
+        dom(178, VK_MEDIA_STOP);
+        dom(179, VK_MEDIA_PLAY_PAUSE);
+        dom(181, VK_AUDIO_VOLUME_MUTE);
+        dom(182, VK_AUDIO_VOLUME_DOWN);
+        dom(183, VK_AUDIO_VOLUME_UP);
+        dom(186, KeyEvent.VK_SEMICOLON);
+        dom(187, KeyEvent.VK_EQUALS);
+        dom(188, KeyEvent.VK_COMMA);
+        dom(189, KeyEvent.VK_MINUS);
+        dom(190, KeyEvent.VK_PERIOD);
+        dom(191, KeyEvent.VK_SLASH);
+        dom(192, KeyEvent.VK_BACK_QUOTE);
+        dom(219, KeyEvent.VK_OPEN_BRACKET);
+        dom(220, KeyEvent.VK_BACK_SLASH);
+        dom(221, KeyEvent.VK_CLOSE_BRACKET);
+        dom(222, KeyEvent.VK_QUOTE);
+        dom(225, KeyEvent.VK_ALT_GRAPH);
+        dom(226, KeyEvent.VK_LESS);
+    }
+
+    private KeyMap() {}
+
+    /** KeyboardEvent.key 或 KeyboardEvent.code 取值转换为 AWT 键码，未知返回 KeyEvent.VK_UNDEFINED。 */
+    public static int toKeyCode(String key) {
+        if (key == null || key.isEmpty()) return KeyEvent.VK_UNDEFINED;
+        int i = slot(key.hashCode());
+        String n;
+        while ((n = NAMES[i]) != null) {
+            if (n.equals(key)) return CODES[i];
+            i = (i + 1) & MASK;
+        }
+        return KeyEvent.VK_UNDEFINED;
+    }
+
+    /** DOM keyCode（二进制协议使用）转换为 AWT 键码，未知返回 KeyEvent.VK_UNDEFINED。 */
+    public static int fromDomKeyCode(int code) {
+        return code >= 0 && code < DOM.length ? DOM[code] : KeyEvent.VK_UNDEFINED;
+    }
+
+    /** 是否为修饰键（Shift、Ctrl、Alt、AltGr、Meta/Win）。 */
+    public static boolean isModifier(int code) {
+        switch (code) {
+            case KeyEvent.VK_SHIFT:
+            case KeyEvent.VK_CONTROL:
+            case KeyEvent.VK_ALT:
+            case KeyEvent.VK_ALT_GRAPH:
+            case KeyEvent.VK_META:
+            case KeyEvent.VK_WINDOWS:
+                return true;
             default:
-                if (key.length() == 1) {
-                    char c = key.charAt(0);
-                    if (c >= 'A' && c <= 'Z') return (int)c;
-                    if (c >= 'a' && c <= 'z') return (int)Character.toUpperCase(c);
-                    if (c >= '0' && c <= '9') return (int)c;
-                }
-                return null;
+                return false;
         }
     }
-}
\ No newline at end of file
+
+    /** 是否为 AWT 没有定义的私有键码（媒体/浏览器键）。 */
+    public static boolean isExtra(int code) {
+        return code > VK_EXTRA_BASE && code <= VK_BROWSER_SEARCH;
+    }
+
+    private static int slot(int h) {
+        // 打散 String.hashCode 的低位，避免相邻名称（F1..F24、Digit0..9）聚在一起
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return h & MASK;
+    }
+
+    private static void put(int code, String... names) {
+        for (String name : names) {
+            int i = slot(name.hashCode());
+            while (NAMES[i] != null && !NAMES[i].equals(name)) i = (i + 1) & MASK;
+            NAMES[i] = name;
+            CODES[i] = code;
+        }
+    }
+
+    private static void dom(int keyCode, int vk) {
+        DOM[keyCode] = vk;
+    }
+}
@@ -0,0 +1,159 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.event.KeyEvent;
+import java.awt.im.InputContext;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 当前键盘布局下“字符 → 按键”的稠密表，启动时按布局生成一次，typeText 逐字符直接索引。
+ * 表项低 16 位为 AWT 键码，{@link #SHIFT} 表示需按住 Shift；-1 表示无法直接敲出，由调用方改走粘贴。
+ * 只收录在该布局下按 VK 注入结果确定的字符，拿不准的一律留给粘贴。
+ *
+ * <p>键位表（positional）：uinput 等后端把键码当作美式键盘上的物理键位，字符由系统布局换算，
+ * 表项因此是“该字符在美式键盘上对应位置的键码”，如德式布局下 z 为 VK_Y、- 为 VK_SLASH。
+ */
+final class KeyboardLayout {
+    static final int SHIFT = 1 << 16;
+    static final int VK_MASK = 0xFFFF;
+
+    private static final int SIZE = 256;
+
+    final String name;
+    private final int[] strokes;
+
+    private KeyboardLayout(String name, int[] strokes) {
+        this.name = name;
+        this.strokes = strokes;
+    }
+
+    /** 字符对应的按键，无法直接敲出时返回 -1。 */
+    int stroke(char c) {
+        return c < SIZE ? strokes[c] : -1;
+    }
+
+    /**
+     * 按配置选择布局：us | uk | de | basic；auto（或留空）时按系统输入法区域推断。
+     * 不认识的布局只保留字母与空白键，其余字符粘贴；键位表下字母位置也不确定（如 AZERTY），只保留空白键。
+     */
+    static KeyboardLayout resolve(String configured, boolean positional) {
+        String name = configured == null || configured.isEmpty() || "auto".equalsIgnoreCase(configured)
+                ? detect() : configured.toLowerCase(Locale.ROOT);
+        int[] t = new int[SIZE];
+        Arrays.fill(t, -1);
+        switch (name) {
+            case "us":
+                basic(t);
+                digits(t);
+                us(t);
+                break;
+            case "uk":
+                basic(t);
+                digits(t);
+                us(t);
+                // 英式布局：" 在 Shift+2，£ 在 Shift+3；@ # ~ \ | ` 的位置与美式不同，交给粘贴
+                t['"'] = KeyEvent.VK_2 | SHIFT;
+                t[0xA3] = KeyEvent.VK_3 | SHIFT;
+                t['@'] = t['#'] = t['~'] = t['\\'] = t['|'] = t['`'] = -1;
+                break;
+            case "de":
+                basic(t);
+                digits(t);
+                // 德式布局的数字行上档与 - , . 三个键
+                String shifted = "=!\"§$%&/()";
+                for (int i = 0; i < 10; i++) t[shifted.charAt(i)] = (KeyEvent.VK_0 + i) | SHIFT;
+                t['-'] = KeyEvent.VK_MINUS;
+                t['_'] = KeyEvent.VK_MINUS | SHIFT;
+                t[','] = KeyEvent.VK_COMMA;
+                t[';'] = KeyEvent.VK_COMMA | SHIFT;
+                t['.'] = KeyEvent.VK_PERIOD;
+                t[':'] = KeyEvent.VK_PERIOD | SHIFT;
+                if (positional) {
+                    // QWERTZ：Y/Z 互换，- 位于美式 / 的位置（美式 - 的位置是 ß）
+                    t['y'] = KeyEvent.VK_Z;
+                    t['z'] = KeyEvent.VK_Y;
+                    t['Y'] = KeyEvent.VK_Z | SHIFT;
+                    t['Z'] = KeyEvent.VK_Y | SHIFT;
+                    t['-'] = KeyEvent.VK_SLASH;
+                    t['_'] = KeyEvent.VK_SLASH | SHIFT;
+                }
+                break;
+            default:
+                name = "basic";
+                if (positional) whitespace(t);
+                else basic(t);
+                break;
+        }
+        return new KeyboardLayout(name, t);
+    }
+
+    /** 由输入法区域推断布局；中日韩输入法通常搭配美式键盘。 */
+    static String detect() {
+        Locale locale = null;
+        try {
+            InputContext ic = InputContext.getInstance();
+            if (ic != null) locale = ic.getLocale();
+        } catch (Throwable ignored) {
+        }
+        if (locale == null) locale = Locale.getDefault();
+        String lang = locale.getLanguage();
+        String country = locale.getCountry();
+        switch (lang) {
+            case "en":
+                return "GB".equals(country) || "IE".equals(country) ? "uk" : "us";
+            case "zh":
+            case "ja":
+            case "ko":
+                return "us";
+            case "de":
+                // 瑞士德语布局的上档符号不同
+                return "CH".equals(country) ? "basic" : "de";
+            default:
+                return "basic";
+        }
+    }
+
+    private static void basic(int[] t) {
+        for (char c = 'a'; c <= 'z'; c++) t[c] = KeyEvent.VK_A + (c - 'a');
+        for (char c = 'A'; c <= 'Z'; c++) t[c] = (KeyEvent.VK_A + (c - 'A')) | SHIFT;
+        whitespace(t);
+    }
+
+    private static void whitespace(int[] t) {
+        t['\n'] = t['\r'] = KeyEvent.VK_ENTER;
+        t['\t'] = KeyEvent.VK_TAB;
+        t['\b'] = KeyEvent.VK_BACK_SPACE;
+        t[' '] = KeyEvent.VK_SPACE;
+    }
+
+    private static void digits(int[] t) {
+        for (char c = '0'; c <= '9'; c++) t[c] = KeyEvent.VK_0 + (c - '0');
+    }
+
+    private static void us(int[] t) {
+        t[','] = KeyEvent.VK_COMMA;
+        t['.'] = KeyEvent.VK_PERIOD;
+        t['/'] = KeyEvent.VK_SLASH;
+        t['-'] = KeyEvent.VK_MINUS;
+        t['='] = KeyEvent.VK_EQUALS;
+        t['['] = KeyEvent.VK_OPEN_BRACKET;
+        t[']'] = KeyEvent.VK_CLOSE_BRACKET;
+        t[';'] = KeyEvent.VK_SEMICOLON;
+        t['\''] = KeyEvent.VK_QUOTE;
+        t['\\'] = KeyEvent.VK_BACK_SLASH;
+        t['`'] = KeyEvent.VK_BACK_QUOTE;
+        String shifted = ")!@#$%^&*(";
+        for (int i = 0; i < 10; i++) t[shifted.charAt(i)] = (KeyEvent.VK_0 + i) | SHIFT;
+        t['_'] = KeyEvent.VK_MINUS | SHIFT;
+        t['+'] = KeyEvent.VK_EQUALS | SHIFT;
+        t['{'] = KeyEvent.VK_OPEN_BRACKET | SHIFT;
+        t['}'] = KeyEvent.VK_CLOSE_BRACKET | SHIFT;
+        t[':'] = KeyEvent.VK_SEMICOLON | SHIFT;
+        t['"'] = KeyEvent.VK_QUOTE | SHIFT;
+        t['<'] = KeyEvent.VK_COMMA | SHIFT;
+        t['>'] = KeyEvent.VK_PERIOD | SHIFT;
+        t['?'] = KeyEvent.VK_SLASH | SHIFT;
+        t['|'] = KeyEvent.VK_BACK_SLASH | SHIFT;
+        t['~'] = KeyEvent.VK_BACK_QUOTE | SHIFT;
+    }
+}
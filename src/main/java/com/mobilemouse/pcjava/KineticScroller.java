@@ -0,0 +1,86 @@
+package com.mobilemouse.pcjava;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * PC 端惯性引擎：手指抬起时按释放速度在本机按显示帧节奏生成逐渐衰减的滚轮或指针位移，
+ * 客户端无需在抬手后继续发送帧。速度按 v *= exp(-kineticFriction * dt) 衰减，
+ * 低于最小速度或超过最长时长即停止；任何新的触摸/输入都会立即取消。帧节拍由共用的 {@link TimerWheel} 产生。
+ */
+final class KineticScroller {
+    static final int POINTER = 1;
+    static final int WHEEL = 2;
+
+    // 停止阈值：指针 像素/秒，滚轮 格/秒
+    private static final double MIN_POINTER_SPEED = 30.0;
+    private static final double MIN_WHEEL_SPEED = 1.5;
+
+    private final Session session;
+    private final TimerWheel timer;
+    // 帧间隔在每次开始惯性时读取，注入器就绪前后可能不同
+    private final LongSupplier periodNanos;
+    private final double friction;
+    private final long maxNanos;
+
+    private TimerWheel.Timeout task;
+    private int mode;
+    private double vx, vy;
+    private long lastTick;
+    private long startedAt;
+
+    KineticScroller(Session session, LongSupplier periodNanos, AppConfig config, TimerWheel timer) {
+        this.session = session;
+        this.timer = timer;
+        this.periodNanos = periodNanos;
+        this.friction = config.kineticFriction <= 0 ? 4.0 : config.kineticFriction;
+        this.maxNanos = Math.max(100, config.kineticMaxMs) * 1_000_000L;
+    }
+
+    /** 以释放速度（单位/秒）开始惯性；速度太小时不启动。 */
+    synchronized void fling(int mode, double vx, double vy) {
+        cancel();
+        double min = mode == POINTER ? MIN_POINTER_SPEED : MIN_WHEEL_SPEED;
+        if (Math.hypot(vx, vy) < min) return;
+        this.mode = mode;
+        this.vx = vx;
+        this.vy = vy;
+        this.startedAt = this.lastTick = System.nanoTime();
+        long period = periodNanos.getAsLong();
+        task = timer.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    synchronized void cancel() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    synchronized boolean isActive() {
+        return task != null;
+    }
+
+    private synchronized void tick() {
+        if (task == null) return;
+        long now = System.nanoTime();
+        double dt = (now - lastTick) / 1_000_000_000.0;
+        lastTick = now;
+        // 取本帧起止速度的平均值积分，衰减曲线与帧率无关
+        double decay = Math.exp(-friction * dt);
+        double avg = (1 - decay) / (friction * dt);
+        double dx = vx * dt * avg;
+        double dy = vy * dt * avg;
+        vx *= decay;
+        vy *= decay;
+        if (mode == POINTER) {
+            session.moveRelative(dx, dy);
+        } else {
+            session.scroll(dx, dy);
+        }
+        double min = mode == POINTER ? MIN_POINTER_SPEED : MIN_WHEEL_SPEED;
+        if (Math.hypot(vx, vy) < min || now - startedAt > maxNanos) {
+            cancel();
+        }
+    }
+}
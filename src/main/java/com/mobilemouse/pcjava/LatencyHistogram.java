@@ -0,0 +1,71 @@
+package com.mobilemouse.pcjava;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数分桶的延迟直方图（纳秒）。每个 2 的幂区间再细分 4 个子桶，相对误差不超过 25%；
+ * 记录只做原子自增，无锁、无分配，可在任意线程并发调用。
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 2;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        total.incrementAndGet();
+        sum.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get())) {
+            if (max.compareAndSet(m, nanos)) break;
+        }
+    }
+
+    long count() {
+        return total.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double mean() {
+        long n = total.get();
+        return n == 0 ? 0.0 : (double)sum.get() / n;
+    }
+
+    /** 第 q 分位（0~1）所在桶的上界；无数据时返回 0。 */
+    long percentile(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    static int index(long v) {
+        if (v < SUB) return (int)v;
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int)(v >>> (msb - SUB_BITS)) & (SUB - 1);
+        return (msb - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB) return index;
+        int msb = index / SUB - 1 + SUB_BITS;
+        long sub = index % SUB;
+        long lower = (1L << msb) + (sub << (msb - SUB_BITS));
+        return lower + (1L << (msb - SUB_BITS)) - 1;
+    }
+}
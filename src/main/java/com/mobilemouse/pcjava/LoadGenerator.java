@@ -0,0 +1,316 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多手机压测：N 个模拟客户端按 60–240 Hz 发送可配置比例的 touchmove / roll / pinch / key_event / text_input，
+ * 每个客户端另以 10 Hz 发送带 ts 的 ping，用 pong 回显计算往返时延；结束时通过 stats 消息读取服务端的
+ * 接收计数、注入延迟、丢弃/合并计数与 CPU/GC，对照客户端发送计数给出吞吐与丢失。
+ * <pre>
+ * java -cp mobilemouse.jar com.mobilemouse.pcjava.LoadGenerator [--url ws://host:8988/ws] [--phones 8]
+ *      [--hz 60-240] [--seconds 10] [--mix touchmove=70,roll=10,pinch=10,key_event=5,text_input=5]
+ * </pre>
+ * 不指定 --url 时在本进程内启动一个使用 recording 后端的服务（此时进程 CPU/GC 也包含压测端自身）。
+ * 客户端遵守 flow pause/resume：暂停期间不发送移动类消息，计为 paused。
+ */
+public final class LoadGenerator {
+    private static final int[] TYPES = {
+            MessageType.TOUCHMOVE, MessageType.ROLL, MessageType.PINCH, MessageType.KEY_EVENT, MessageType.TEXT_INPUT
+    };
+    private static final long PING_PERIOD_MS = 100;
+
+    // System.nanoTime() 换算为纪元毫秒的基准
+    private static final double EPOCH_BASE_MS = System.currentTimeMillis() - System.nanoTime() / 1e6;
+
+    private final LatencyHistogram rtt = new LatencyHistogram();
+    private final AtomicLongArray sent = new AtomicLongArray(MessageType.COUNT);
+    private final AtomicLong pongs = new AtomicLong();
+    private final AtomicLong paused = new AtomicLong();
+    private final AtomicLong flowPauses = new AtomicLong();
+    private final BlockingQueue<String> statsReplies = new LinkedBlockingQueue<>();
+
+    /** 一个模拟手机：独立连接、发送频率与随机序列。 */
+    private final class Phone {
+        final int index;
+        final double hz;
+        final Random random;
+        final StringBuilder sb = new StringBuilder(96);
+        WebSocketClient ws;
+        volatile boolean flowPaused = false;
+        boolean keyDown = false;
+
+        Phone(int index, double hz) {
+            this.index = index;
+            this.hz = hz;
+            this.random = new Random(index * 7919L + 17);
+        }
+
+        void connect(URI uri) throws InterruptedException {
+            ws = new WebSocketClient(uri) {
+                @Override public void onOpen(ServerHandshake h) {}
+
+                @Override
+                public void onMessage(String message) {
+                    if (message.startsWith("{\"type\":\"pong\",\"ts\":")) {
+                        int end = message.indexOf('}', 20);
+                        double ts = Double.parseDouble(message.substring(20, end).trim());
+                        rtt.record((long)((epochMs() - ts) * 1_000_000L));
+                        pongs.incrementAndGet();
+                    } else if (message.startsWith("{\"type\":\"flow\"")) {
+                        boolean pause = message.contains("\"pause\"");
+                        if (pause && !flowPaused) flowPauses.incrementAndGet();
+                        flowPaused = pause;
+                    } else if (message.startsWith("{\"type\":\"stats\"")) {
+                        statsReplies.add(message);
+                    }
+                }
+
+                @Override public void onClose(int code, String reason, boolean remote) {}
+
+                @Override
+                public void onError(Exception ex) {
+                    System.out.println("压测连接错误 #" + index + ": " + ex.getMessage());
+                }
+            };
+            if (!ws.connectBlocking(5, TimeUnit.SECONDS)) throw new IllegalStateException("无法连接 " + uri);
+        }
+
+        void tick(int[] weights, int total) {
+            if (!ws.isOpen()) return;
+            int r = random.nextInt(total);
+            int type = TYPES[TYPES.length - 1];
+            for (int i = 0; i < TYPES.length; i++) {
+                if ((r -= weights[i]) < 0) {
+                    type = TYPES[i];
+                    break;
+                }
+            }
+            // 未抬起的按键总是先补发抬起，避免结束时残留按下状态
+            if (keyDown) type = MessageType.KEY_EVENT;
+            boolean motion = type == MessageType.TOUCHMOVE || type == MessageType.ROLL || type == MessageType.PINCH;
+            if (motion && flowPaused) {
+                paused.incrementAndGet();
+                return;
+            }
+            sb.setLength(0);
+            sb.append("{\"type\":\"").append(MessageType.NAMES[type]).append('"');
+            switch (type) {
+                case MessageType.TOUCHMOVE:
+                    sb.append(",\"dx\":").append(random.nextInt(9) - 4).append(",\"dy\":").append(random.nextInt(9) - 4);
+                    break;
+                case MessageType.ROLL:
+                    sb.append(",\"ds\":0,\"dy\":").append((random.nextInt(5) - 2) / 20.0);
+                    break;
+                case MessageType.PINCH:
+                    sb.append(",\"dscale\":").append(random.nextBoolean() ? 0.02 : -0.02);
+                    break;
+                case MessageType.KEY_EVENT:
+                    sb.append(",\"key\":\"").append((char)('a' + index % 26)).append("\",\"action\":\"")
+                            .append(keyDown ? "up" : "down").append('"');
+                    keyDown = !keyDown;
+                    break;
+                default:
+                    sb.append(",\"text\":\"load").append(index).append('"');
+                    break;
+            }
+            // 客户端毫秒时间戳，服务端据此统计端到端延迟（跨机器时需时钟同步）
+            sb.append(",\"ts\":").append(System.currentTimeMillis()).append('}');
+            ws.send(sb.toString());
+            sent.incrementAndGet(type);
+        }
+
+        void ping() {
+            if (!ws.isOpen()) return;
+            // 与其他消息同为纪元毫秒（保留微秒小数），服务端据此估计时钟偏差
+            ws.send("{\"type\":\"ping\",\"ts\":" + String.format(Locale.ROOT, "%.3f", epochMs()) + "}");
+            sent.incrementAndGet(MessageType.PING);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int phones = 8;
+        double hzMin = 60, hzMax = 240;
+        int seconds = 10;
+        String mix = "touchmove=70,roll=10,pinch=10,key_event=5,text_input=5";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--url": url = v; break;
+                case "--phones": phones = Math.max(1, Integer.parseInt(v)); break;
+                case "--seconds": seconds = Math.max(1, Integer.parseInt(v)); break;
+                case "--mix": mix = v; break;
+                case "--hz": {
+                    int dash = v.indexOf('-');
+                    hzMin = Double.parseDouble(dash < 0 ? v : v.substring(0, dash));
+                    hzMax = dash < 0 ? hzMin : Double.parseDouble(v.substring(dash + 1));
+                    break;
+                }
+                default:
+                    System.out.println("未知参数: " + args[i]);
+                    return;
+            }
+        }
+        MobileMouseServer local = null;
+        if (url == null) {
+            int port;
+            try (ServerSocket probe = new ServerSocket(0)) {
+                port = probe.getLocalPort();
+            }
+            System.setProperty("java.awt.headless", "true");
+            AppConfig config = new AppConfig();
+            config.backend = "recording";
+            config.recordingCapacity = 0;
+            local = new MobileMouseServer(port, config);
+            local.start();
+            url = "ws://127.0.0.1:" + port + "/ws";
+        }
+        int status = 0;
+        try {
+            new LoadGenerator().run(new URI(url), phones, hzMin, hzMax, seconds, parseMix(mix));
+        } catch (Exception e) {
+            // 失败时以非 0 退出（jlink 冒烟检查依赖这一点），本进程内的服务照常停止
+            System.out.println("压测失败: " + e);
+            status = 1;
+        }
+        if (local != null) local.stop(1000);
+        System.exit(status);
+    }
+
+    private static int[] parseMix(String mix) {
+        int[] w = new int[TYPES.length];
+        for (String part : mix.split(",")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) continue;
+            int type = MessageType.lookup(part.substring(0, eq).trim());
+            for (int i = 0; i < TYPES.length; i++) {
+                if (TYPES[i] == type) w[i] = Math.max(0, Integer.parseInt(part.substring(eq + 1).trim()));
+            }
+        }
+        return w;
+    }
+
+    private void run(URI uri, int n, double hzMin, double hzMax, int seconds, int[] weights) throws Exception {
+        int total = 0;
+        for (int w : weights) total += w;
+        if (total == 0) throw new IllegalArgumentException("--mix 中没有可发送的类型");
+        List<Phone> phones = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double hz = n == 1 ? hzMin : hzMin + (hzMax - hzMin) * i / (n - 1);
+            Phone p = new Phone(i, Math.max(1, hz));
+            connectWithRetry(p, uri);
+            phones.add(p);
+        }
+        Phone control = phones.get(0);
+        JsonObject before = requestStats(control);
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(
+                Math.min(n, Runtime.getRuntime().availableProcessors()), r -> {
+                    Thread t = new Thread(r, "load-phone");
+                    t.setDaemon(true);
+                    return t;
+                });
+        final int sum = total;
+        long started = System.nanoTime();
+        for (Phone p : phones) {
+            timer.scheduleAtFixedRate(() -> p.tick(weights, sum), 0, (long)(1_000_000_000L / p.hz), TimeUnit.NANOSECONDS);
+            timer.scheduleAtFixedRate(p::ping, PING_PERIOD_MS, PING_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("压测: " + n + " 台手机, " + hzMin + "-" + hzMax + " Hz, " + seconds + " s -> " + uri);
+        Thread.sleep(seconds * 1000L);
+        timer.shutdown();
+        timer.awaitTermination(1, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        // 等服务端把队列中的事件注入完
+        Thread.sleep(500);
+        JsonObject after = requestStats(control);
+        for (Phone p : phones) p.ws.closeBlocking();
+        report(before, after, elapsed);
+    }
+
+    private static void connectWithRetry(Phone p, URI uri) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                p.connect(uri);
+                return;
+            } catch (IllegalStateException e) {
+                if (attempt >= 20) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static double epochMs() {
+        return EPOCH_BASE_MS + System.nanoTime() / 1e6;
+    }
+
+    private JsonObject requestStats(Phone p) throws InterruptedException {
+        statsReplies.clear();
+        p.ws.send("{\"type\":\"stats\"}");
+        String reply = statsReplies.poll(5, TimeUnit.SECONDS);
+        if (reply == null) throw new IllegalStateException("服务端未应答 stats");
+        return JsonParser.parseString(reply).getAsJsonObject();
+    }
+
+    private void report(JsonObject before, JsonObject after, double elapsed) {
+        JsonObject g0 = before.getAsJsonObject("global"), g1 = after.getAsJsonObject("global");
+        JsonObject t0 = g0.getAsJsonObject("types"), t1 = g1.getAsJsonObject("types");
+        long sentTotal = 0, receivedTotal = 0;
+        System.out.println(String.format("%-12s %10s %10s %8s %10s %10s %10s", "type", "sent", "received", "lost",
+                "inj p50us", "inj p99us", "e2e p99us"));
+        for (int type : new int[]{MessageType.TOUCHMOVE, MessageType.ROLL, MessageType.PINCH, MessageType.KEY_EVENT,
+                MessageType.TEXT_INPUT, MessageType.PING}) {
+            long s = sent.get(type);
+            if (s == 0) continue;
+            String name = MessageType.NAMES[type];
+            JsonObject t = t1.has(name) ? t1.getAsJsonObject(name) : new JsonObject();
+            long r = count(t, "received") - (t0.has(name) ? count(t0.getAsJsonObject(name), "received") : 0);
+            sentTotal += s;
+            receivedTotal += r;
+            System.out.println(String.format("%-12s %10d %10d %8d %10d %10d %10d", name, s, r, Math.max(0, s - r),
+                    nested(t, "injectUs", "p50"), nested(t, "injectUs", "p99"), nested(t, "clientUs", "p99")));
+        }
+        System.out.println(String.format("吞吐: 发送 %.0f 条/s, 服务端接收 %.0f 条/s", sentTotal / elapsed, receivedTotal / elapsed));
+        System.out.println(String.format("ping 往返(us): p50=%d p90=%d p99=%d max=%d, 回应 %d/%d",
+                rtt.percentile(0.50) / 1000, rtt.percentile(0.90) / 1000, rtt.percentile(0.99) / 1000,
+                rtt.max() / 1000, pongs.get(), sent.get(MessageType.PING)));
+        System.out.println("服务端: dropped=" + delta(g0, g1, "dropped") + " shed=" + delta(g0, g1, "shed")
+                + " coalesced=" + delta(g0, g1, "coalesced") + " errors=" + delta(g0, g1, "errors")
+                + " flowPauses=" + flowPauses.get() + " 客户端暂停跳过=" + paused.get());
+        JsonObject p0 = before.getAsJsonObject("process"), p1 = after.getAsJsonObject("process");
+        long cpuMs = delta(p0, p1, "cpuTimeMs");
+        System.out.println(String.format("服务端进程: CPU %d ms (%.1f%% 单核), GC %d 次 / %d ms, 堆 %d MB, 线程 %d",
+                cpuMs, cpuMs / (elapsed * 10), delta(p0, p1, "gcCount"), delta(p0, p1, "gcTimeMs"),
+                count(p1, "heapUsedBytes") / (1024 * 1024), count(p1, "threads")));
+    }
+
+    private static long count(JsonObject o, String name) {
+        JsonElement e = o == null ? null : o.get(name);
+        return e == null || e.isJsonNull() ? 0 : e.getAsLong();
+    }
+
+    private static long delta(JsonObject a, JsonObject b, String name) {
+        return count(b, name) - count(a, name);
+    }
+
+    private static long nested(JsonObject o, String child, String name) {
+        return o.has(child) ? count(o.getAsJsonObject(child), name) : 0;
+    }
+}
@@ -4,36 +4,91 @@ import java.net.Inet4Address;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public final class Main {
     public static void main(String[] args) throws Exception {
+        StartupReport startup = new StartupReport();
+        // 启动步骤互不依赖的部分并行：网卡枚举、注入后端创建与端口绑定同时进行
+        ExecutorService init = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "startup");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<List<String>> ips = CompletableFuture.supplyAsync(() -> startup.time("网卡", Main::listIPv4), init);
+
         int port = 8988;
-        if (args.length > 0) {
-            try { port = Integer.parseInt(args[0]); } catch (Exception ignored) {}
+        AppConfig config = startup.time("配置", AppConfig::loadOrCreate);
+        // 用法: [port] [--low-latency] [--decoders N]，命令行优先于 config.json
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            if ("--low-latency".equals(a)) {
+                config.lowLatency = true;
+            } else if ("--decoders".equals(a) && i + 1 < args.length) {
+                try { config.decoders = Integer.parseInt(args[++i]); } catch (Exception ignored) {}
+            } else {
+                try { port = Integer.parseInt(a); } catch (Exception ignored) {}
+            }
         }
 
-        System.setProperty("java.awt.headless", "false");
+        // 录制/uinput 后端不依赖 AWT 显示，可在无头环境运行
+        if ("robot".equalsIgnoreCase(config.backend == null ? "robot" : config.backend.trim())) {
+            System.setProperty("java.awt.headless", "false");
+        }
         System.out.println("MobileMouse PC (Java 8) 启动中...");
-        System.out.println("监听 ws://0.0.0.0:" + port + "/ws");
-        printIPv4();
+        System.out.println("监听 ws://0.0.0.0:" + port + "/ws" + " (注入后端: " + config.backend + ")");
 
-        MobileMouseServer server = new MobileMouseServer(port);
+        // Robot 与显示器布局的初始化最慢，不等它就绑定端口；就绪前到达的输入在会话队列中等待
+        CompletableFuture<InputInjector> injector = CompletableFuture.supplyAsync(
+                () -> startup.time("注入后端", () -> new InputInjector(config)), init);
+        int listenPort = port;
+        MobileMouseServer server = startup.time("服务", () -> new MobileMouseServer(listenPort, config, injector));
+        server.setStartupReport(startup);
+        // 正常退出、Ctrl+C 或 kill 时抬起仍按住的键与修饰键，不在系统里留下卡住的输入
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop(1000);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }, "shutdown"));
         server.start();
+
+        ips.thenAccept(list -> {
+            if (list.isEmpty()) System.out.println("IPv4: 未找到可用的网络接口");
+            for (String ip : list) System.out.println("IPv4: " + ip);
+        });
+        try {
+            injector.join();
+        } catch (CompletionException e) {
+            System.out.println("注入后端初始化失败: " + e.getCause());
+            server.stop(1000);
+            System.exit(1);
+        } finally {
+            init.shutdown();
+        }
     }
 
-    private static void printIPv4() {
+    private static List<String> listIPv4() {
+        List<String> out = new ArrayList<>();
         try {
             for (NetworkInterface nif : Collections.list(NetworkInterface.getNetworkInterfaces())) {
                 if (!nif.isUp() || nif.isLoopback()) continue;
                 for (InetAddress addr : Collections.list(nif.getInetAddresses())) {
                     if (addr instanceof Inet4Address) {
-                        System.out.println("IPv4: " + addr.getHostAddress());
+                        out.add(addr.getHostAddress());
                     }
                 }
             }
         } catch (SocketException e) {
             System.out.println("无法枚举网络接口: " + e.getMessage());
         }
+        return out;
     }
-}
\ No newline at end of file
+}
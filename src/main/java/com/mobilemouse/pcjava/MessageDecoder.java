@@ -0,0 +1,306 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 面向高频消息的流式解码器：单次扫描 JSON 文本，把 type 与数值字段直接写入
+ * {@link InboundMessage}，过程中不创建 JsonObject、字符串或装箱数值。
+ * 只接受扁平对象；遇到嵌套结构、转义字符、低频类型或任何不确定的写法时返回 false，
+ * 由调用方回退到 JsonParser 树解析。
+ * batch 消息的 events 数组在同一次扫描中逐条解码到调用方提供的消息数组，
+ * 数组中出现低频类型或条数超过数组长度时整条回退。
+ */
+final class MessageDecoder {
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private String s;
+    private int pos;
+    private int end;
+    private double number;
+    // 当前 batch 的事件输出数组与已解码条数；nested 为 true 时正在解析数组元素
+    private InboundMessage[] events;
+    private int eventCount;
+    private boolean nested;
+
+    boolean decode(String message, InboundMessage out) {
+        return decode(message, out, null);
+    }
+
+    /** 同 {@link #decode(String, InboundMessage)}，events 非空时也接受 batch，条数由 {@link #eventCount()} 给出。 */
+    boolean decode(String message, InboundMessage out, InboundMessage[] events) {
+        out.reset();
+        out.raw = message;
+        s = message;
+        pos = 0;
+        end = message.length();
+        this.events = events;
+        eventCount = 0;
+        nested = false;
+        try {
+            if (!parseObject(out) || !trailing()) return false;
+            if (out.type == MessageType.BATCH) return events != null;
+            return isFastType(out.type);
+        } finally {
+            s = null;
+            this.events = null;
+        }
+    }
+
+    int eventCount() {
+        return eventCount;
+    }
+
+    static boolean isFastType(int type) {
+        switch (type) {
+            case MessageType.UNKNOWN:
+            case MessageType.HELLO:
+            case MessageType.KEY_EVENT:
+            case MessageType.TEXT_INPUT:
+            case MessageType.STATS:
+            case MessageType.BATCH:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private boolean parseObject(InboundMessage out) {
+        skipWs();
+        if (!expect('{')) return false;
+        skipWs();
+        if (peek() == '}') {
+            pos++;
+            return true;
+        }
+        while (true) {
+            skipWs();
+            if (!expect('"')) return false;
+            int ks = pos;
+            int ke = scanPlainString();
+            if (ke < 0) return false;
+            skipWs();
+            if (!expect(':')) return false;
+            skipWs();
+            if (!parseField(out, ks, ke)) return false;
+            skipWs();
+            char c = peek();
+            pos++;
+            if (c == ',') continue;
+            if (c == '}') return true;
+            return false;
+        }
+    }
+
+    private boolean parseEvents() {
+        pos++;
+        skipWs();
+        if (peek() == ']') {
+            pos++;
+            return true;
+        }
+        nested = true;
+        try {
+            while (true) {
+                if (eventCount == events.length) return false;
+                InboundMessage e = events[eventCount];
+                e.reset();
+                e.raw = s;
+                if (!parseObject(e) || !isFastType(e.type)) return false;
+                eventCount++;
+                skipWs();
+                char c = peek();
+                pos++;
+                if (c == ',') continue;
+                if (c == ']') return true;
+                return false;
+            }
+        } finally {
+            nested = false;
+        }
+    }
+
+    private boolean parseField(InboundMessage out, int ks, int ke) {
+        int klen = ke - ks;
+        char c = peek();
+        if (c == '"') {
+            pos++;
+            int vs = pos;
+            int ve = scanPlainString();
+            if (ve < 0) return false;
+            if (isKey(ks, klen, "type")) {
+                out.type = MessageType.lookup(s, vs, ve);
+            } else if (isKey(ks, klen, "button")) {
+                if (ve > vs) out.button = buttonOf(vs, ve);
+            } else if (isKey(ks, klen, "action")) {
+                if (ve > vs) out.action = actionOf(vs, ve);
+            } else if (isNumericKey(ks, klen)) {
+                // 数值字段以字符串形式出现，交给树解析处理
+                return false;
+            }
+            return true;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            int vs = pos;
+            if (!parseNumber()) return false;
+            double v = number;
+            if (klen == 2) {
+                char a = s.charAt(ks), b = s.charAt(ks + 1);
+                if (a == 'd' && b == 'x') out.dx = v;
+                else if (a == 'd' && b == 'y') out.dy = v;
+                else if (a == 'd' && b == 's') out.ds = v;
+                else if (a == 'd' && b == 'r') out.dr = v;
+                else if (a == 'v' && b == 'x') out.vx = v;
+                else if (a == 'v' && b == 'y') out.vy = v;
+                else if (a == 't' && b == 's') {
+                    out.hasTs = true;
+                    out.ts = v;
+                    out.tsStart = vs;
+                    out.tsEnd = pos;
+                } else if (a == 'd' && b == 't') {
+                    out.hasDt = true;
+                    out.dt = v;
+                }
+            } else if (isKey(ks, klen, "dscale")) {
+                out.dscale = v;
+            }
+            return true;
+        }
+        if (c == '[' && events != null && !nested && isKey(ks, klen, "events")) return parseEvents();
+        if (isNumericKey(ks, klen) || isKey(ks, klen, "type")) return false;
+        if (s.startsWith("true", pos)) { pos += 4; return true; }
+        if (s.startsWith("false", pos)) { pos += 5; return true; }
+        if (s.startsWith("null", pos)) { pos += 4; return true; }
+        // 嵌套对象/数组：回退树解析
+        return false;
+    }
+
+    private boolean isNumericKey(int ks, int klen) {
+        if (klen == 2) {
+            char a = s.charAt(ks), b = s.charAt(ks + 1);
+            return (a == 'd' && (b == 'x' || b == 'y' || b == 's' || b == 'r' || b == 't'))
+                    || (a == 'v' && (b == 'x' || b == 'y'))
+                    || (a == 't' && b == 's');
+        }
+        return isKey(ks, klen, "dscale");
+    }
+
+    private boolean isKey(int ks, int klen, String name) {
+        return klen == name.length() && s.regionMatches(ks, name, 0, klen);
+    }
+
+    private int buttonOf(int vs, int ve) {
+        if (isKey(vs, ve - vs, "right")) return InputInjector.BUTTON_RIGHT;
+        if (isKey(vs, ve - vs, "middle")) return InputInjector.BUTTON_MIDDLE;
+        return InputInjector.BUTTON_LEFT;
+    }
+
+    private int actionOf(int vs, int ve) {
+        if (isKey(vs, ve - vs, "down")) return InputInjector.ACTION_DOWN;
+        if (isKey(vs, ve - vs, "up")) return InputInjector.ACTION_UP;
+        if (isKey(vs, ve - vs, "click")) return InputInjector.ACTION_CLICK;
+        return InputInjector.ACTION_NONE;
+    }
+
+    /** 扫描到结束引号，返回内容结束位置；遇到转义或控制字符返回 -1。 */
+    private int scanPlainString() {
+        while (pos < end) {
+            char c = s.charAt(pos);
+            if (c == '"') {
+                int e = pos;
+                pos++;
+                return e;
+            }
+            if (c == '\\' || c < 0x20) return -1;
+            pos++;
+        }
+        return -1;
+    }
+
+    private boolean parseNumber() {
+        boolean neg = false;
+        if (peek() == '-') {
+            neg = true;
+            pos++;
+        }
+        long mant = 0;
+        int digits = 0;
+        int scale = 0;
+        int start = pos;
+        while (pos < end) {
+            char c = s.charAt(pos);
+            if (c < '0' || c > '9') break;
+            if (digits < 18) {
+                mant = mant * 10 + (c - '0');
+                if (mant != 0) digits++;
+            } else {
+                scale++;
+            }
+            pos++;
+        }
+        if (pos == start) return false;
+        if (pos < end && s.charAt(pos) == '.') {
+            pos++;
+            int fs = pos;
+            while (pos < end) {
+                char c = s.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (digits < 18) {
+                    mant = mant * 10 + (c - '0');
+                    if (mant != 0) digits++;
+                    scale--;
+                }
+                pos++;
+            }
+            if (pos == fs) return false;
+        }
+        if (pos < end && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            pos++;
+            boolean eneg = false;
+            if (peek() == '-' || peek() == '+') {
+                eneg = peek() == '-';
+                pos++;
+            }
+            int es = pos;
+            int exp = 0;
+            while (pos < end) {
+                char c = s.charAt(pos);
+                if (c < '0' || c > '9') break;
+                if (exp < 1000) exp = exp * 10 + (c - '0');
+                pos++;
+            }
+            if (pos == es) return false;
+            scale += eneg ? -exp : exp;
+        }
+        double v = mant;
+        if (scale > 0) v *= scale < POW10.length ? POW10[scale] : Math.pow(10, scale);
+        else if (scale < 0) v /= -scale < POW10.length ? POW10[-scale] : Math.pow(10, -scale);
+        number = neg ? -v : v;
+        return true;
+    }
+
+    private boolean trailing() {
+        skipWs();
+        return pos == end;
+    }
+
+    private boolean expect(char c) {
+        if (pos < end && s.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        return pos < end ? s.charAt(pos) : '\0';
+    }
+
+    private void skipWs() {
+        while (pos < end) {
+            char c = s.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return;
+            pos++;
+        }
+    }
+}
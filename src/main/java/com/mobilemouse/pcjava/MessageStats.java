@@ -0,0 +1,167 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * 一个统计范围（全局或单个连接）的计数与按消息类型划分的延迟直方图。
+ * 连接级统计记录时同时写入全局统计（parent）。
+ */
+final class MessageStats {
+    final String label;
+    private final MessageStats parent;
+    private final long createdAt = System.currentTimeMillis();
+
+    private final AtomicLongArray received = new AtomicLongArray(MessageType.COUNT);
+    // 从收到帧到注入完成
+    private final LatencyHistogram[] inject = new LatencyHistogram[MessageType.COUNT];
+    // 从客户端发送（ts）到注入完成
+    private final LatencyHistogram[] endToEnd = new LatencyHistogram[MessageType.COUNT];
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong unsupported = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    // 积压时被合并掉的移动/滚动、发出的 pause 次数
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong flowPauses = new AtomicLong();
+    // UDP 侧通道中乱序或重复而被丢弃的数据报
+    private final AtomicLong stale = new AtomicLong();
+    // 滞后超过 motionTtlMs 而被合并或丢弃的移动/滚动
+    private final AtomicLong late = new AtomicLong();
+    private volatile IntSupplier queueDepth;
+    // 连接的时钟估计，全局统计为 null
+    private volatile ClockSync clock;
+
+    MessageStats(String label, MessageStats parent) {
+        this.label = label;
+        this.parent = parent;
+        for (int i = 0; i < MessageType.COUNT; i++) {
+            inject[i] = new LatencyHistogram();
+            endToEnd[i] = new LatencyHistogram();
+        }
+    }
+
+    void onReceived(int type) {
+        received.incrementAndGet(type);
+        if (parent != null) parent.onReceived(type);
+    }
+
+    /**
+     * 记录一条消息处理完成；sentMs 为按会话时钟偏差校正后的发送时刻（{@link ClockSync#toLocalMs}），
+     * 未提供 ts 或还没有偏差估计时传 0。
+     */
+    void onCompleted(int type, long recvNanos, double sentMs, long doneNanos) {
+        inject[type].record(doneNanos - recvNanos);
+        if (sentMs > 0) {
+            double ms = ClockSync.epochMs(doneNanos) - sentMs;
+            // 偏差估计刚切换等情况下的异常样本不计入
+            if (ms >= 0 && ms < 60_000) endToEnd[type].record((long)(ms * 1_000_000L));
+        }
+        if (parent != null) parent.onCompleted(type, recvNanos, sentMs, doneNanos);
+    }
+
+    void onCoalesced() {
+        coalesced.incrementAndGet();
+        if (parent != null) parent.onCoalesced();
+    }
+
+    void onDropped() {
+        dropped.incrementAndGet();
+        if (parent != null) parent.onDropped();
+    }
+
+    void onUnsupported() {
+        unsupported.incrementAndGet();
+        if (parent != null) parent.onUnsupported();
+    }
+
+    void onShed() {
+        shed.incrementAndGet();
+        if (parent != null) parent.onShed();
+    }
+
+    void onFlowPause() {
+        flowPauses.incrementAndGet();
+        if (parent != null) parent.onFlowPause();
+    }
+
+    void onStale() {
+        stale.incrementAndGet();
+        if (parent != null) parent.onStale();
+    }
+
+    void onLate() {
+        late.incrementAndGet();
+        if (parent != null) parent.onLate();
+    }
+
+    void setClock(ClockSync clock) {
+        this.clock = clock;
+    }
+
+    /** 注入队列深度的读取方式（会话或整个流水线）。 */
+    void setQueueDepthGauge(IntSupplier gauge) {
+        this.queueDepth = gauge;
+    }
+
+    int queueDepth() {
+        IntSupplier g = queueDepth;
+        return g == null ? 0 : g.getAsInt();
+    }
+
+    long shedCount() {
+        return shed.get();
+    }
+
+    void onError() {
+        errors.incrementAndGet();
+        if (parent != null) parent.onError();
+    }
+
+    long injectPercentileNanos(int type, double q) {
+        return inject[type].percentile(q);
+    }
+
+    JsonObject toJson() {
+        JsonObject o = new JsonObject();
+        o.addProperty("label", label);
+        o.addProperty("uptimeMs", System.currentTimeMillis() - createdAt);
+        o.addProperty("coalesced", coalesced.get());
+        o.addProperty("dropped", dropped.get());
+        o.addProperty("unsupported", unsupported.get());
+        o.addProperty("errors", errors.get());
+        o.addProperty("shed", shed.get());
+        o.addProperty("flowPauses", flowPauses.get());
+        o.addProperty("stale", stale.get());
+        o.addProperty("late", late.get());
+        o.addProperty("queueDepth", queueDepth());
+        ClockSync c = clock;
+        if (c != null) o.add("clock", c.toJson());
+        JsonObject types = new JsonObject();
+        for (int i = 1; i < MessageType.COUNT; i++) {
+            long n = received.get(i);
+            if (n == 0) continue;
+            JsonObject t = new JsonObject();
+            t.addProperty("received", n);
+            t.add("injectUs", histogramJson(inject[i]));
+            if (endToEnd[i].count() > 0) t.add("clientUs", histogramJson(endToEnd[i]));
+            types.add(MessageType.NAMES[i], t);
+        }
+        o.add("types", types);
+        return o;
+    }
+
+    private static JsonObject histogramJson(LatencyHistogram h) {
+        JsonObject o = new JsonObject();
+        o.addProperty("count", h.count());
+        o.addProperty("mean", Math.round(h.mean() / 1000.0));
+        o.addProperty("p50", h.percentile(0.50) / 1000);
+        o.addProperty("p90", h.percentile(0.90) / 1000);
+        o.addProperty("p99", h.percentile(0.99) / 1000);
+        o.addProperty("max", h.max() / 1000);
+        return o;
+    }
+}
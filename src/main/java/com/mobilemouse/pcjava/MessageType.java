@@ -0,0 +1,68 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 协议消息类型的整数编号。解码器按原始字符区间比对类型名，避免为 type 字段分配字符串。
+ */
+final class MessageType {
+    static final int UNKNOWN = 0;
+    static final int HELLO = 1;
+    static final int PING = 2;
+    static final int TOUCHSTART = 3;
+    static final int TOUCHMOVE = 4;
+    static final int TOUCHEND = 5;
+    static final int TAP = 6;
+    static final int DOUBLETAP = 7;
+    static final int LONGPRESS = 8;
+    static final int PINCH = 9;
+    static final int ROTATE = 10;
+    static final int MOUSE_MOVE = 11;
+    static final int MOUSE_BUTTON = 12;
+    static final int SCROLL = 13;
+    static final int ROLL = 14;
+    static final int DRAG = 15;
+    static final int KEY_EVENT = 16;
+    static final int TEXT_INPUT = 17;
+    static final int STATS = 18;
+    static final int TAKEOVER = 19;
+    static final int BATCH = 20;
+
+    static final String[] NAMES = {
+            "", "hello", "ping", "touchstart", "touchmove", "touchend", "tap", "doubletap", "longpress",
+            "pinch", "rotate", "mouse_move", "mouse_button", "scroll", "roll", "drag", "key_event", "text_input",
+            "stats", "takeover", "batch"
+    };
+
+    static final int COUNT = NAMES.length;
+
+    private MessageType() {}
+
+    /** 该类型是否会产生注入命令（延迟统计需等注入线程执行完才结算）。 */
+    static boolean injects(int type) {
+        switch (type) {
+            case UNKNOWN:
+            case HELLO:
+            case PING:
+            case TOUCHSTART:
+            case TOUCHEND:
+            case STATS:
+            case TAKEOVER:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /** 在 s 的 [start, end) 区间内匹配类型名，未知类型返回 {@link #UNKNOWN}。 */
+    static int lookup(String s, int start, int end) {
+        int len = end - start;
+        for (int i = 1; i < NAMES.length; i++) {
+            String name = NAMES[i];
+            if (name.length() == len && s.regionMatches(start, name, 0, len)) return i;
+        }
+        return UNKNOWN;
+    }
+
+    static int lookup(String type) {
+        return type == null ? UNKNOWN : lookup(type, 0, type.length());
+    }
+}
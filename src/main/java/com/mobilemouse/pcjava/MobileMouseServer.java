@@ -1,27 +1,180 @@
 package com.mobilemouse.pcjava;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.PingFrame;
 
 import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class MobileMouseServer extends WebSocketServer {
     private final Gson gson = new Gson();
-    private final InputInjector injector = new InputInjector();
+    private static final String BAD_FRAME_JSON =
+            "{\"type\":\"error\",\"code\":\"BAD_FRAME\",\"message\":\"Malformed binary frame\"}";
+    private static final String PONG_JSON = "{\"type\":\"pong\"}";
+    private static final String PONG_TS_PREFIX = "{\"type\":\"pong\",\"ts\":";
+    private static final String BATCH_TOO_LARGE_JSON =
+            "{\"type\":\"error\",\"code\":\"BATCH_TOO_LARGE\",\"message\":\"Too many events in batch\"}";
+
+    // hello 去掉结尾 '}' 的公共部分，启用 UDP 时按连接追加令牌
+    // UDP 侧通道启动成功后才在 features 中带上 udp，见 onStart
+    private volatile String helloPrefix;
+    private final UdpChannel udp;
+    private volatile boolean udpReady = false;
+    private final AppConfig config;
+    private final int decoders;
+    // 每个连接的 SO_RCVBUF / SO_SNDBUF，0 表示系统默认
+    private final int receiveBuffer;
+    private final int sendBuffer;
+    private final AtomicBoolean socketReported = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    // 入站事件记录，未启用时为 null
+    private final EventRecorder recorder;
+    private final int maxBatch;
+    // 比最快路径多耽搁超过该值（毫秒）的移动/滚动视为滞后，0 表示不判定
+    private final double motionTtlMs;
+    private final boolean dropLate;
+    private final long doubleTapGapMs;
+
+    private final InjectionPipeline pipeline;
+    // 惯性、双击间隔、长按、自动重复、超时释放与时钟同步 ping 共用的时间轮
+    private final TimerWheel timers = new TimerWheel("input-timer");
+    // 没有会话的连接（如基准测试桩）共用的会话
+    private final Session fallback;
+    private final boolean kineticScroll;
+    private final boolean kineticPointer;
+    private final StatsService stats = new StatsService();
+    private final ThreadLocal<DecodeState> decodeState;
+    // 启动耗时报告，仅由 Main 设置
+    private volatile StartupReport startup;
+
+    /** 每个解码线程复用的解码器、消息对象、batch 事件数组与输出缓冲。 */
+    private static final class DecodeState {
+        final MessageDecoder decoder = new MessageDecoder();
+        final InboundMessage msg = new InboundMessage();
+        final InboundMessage[] events;
+        final StringBuilder out = new StringBuilder(64);
+
+        DecodeState(int maxBatch) {
+            events = new InboundMessage[maxBatch];
+            for (int i = 0; i < maxBatch; i++) events[i] = new InboundMessage();
+        }
+    }
 
     public MobileMouseServer(int port) {
-        super(new InetSocketAddress(port));
+        this(port, AppConfig.loadOrCreate());
+    }
+
+    public MobileMouseServer(int port, AppConfig config) {
+        this(port, new InputInjector(config));
+    }
+
+    public MobileMouseServer(int port, InputInjector injector) {
+        this(port, injector.getConfig(), CompletableFuture.completedFuture(injector));
+    }
+
+    /**
+     * 注入器可在其他线程创建（Robot/uinput 初始化较慢）：端口照常绑定、连接照常握手，
+     * 注入器就绪前收到的输入在会话队列中等待。
+     */
+    public MobileMouseServer(int port, AppConfig config, CompletableFuture<InputInjector> injector) {
+        super(new InetSocketAddress(port), decodersOf(config));
+        this.pipeline = new InjectionPipeline(config, injector);
+        this.config = config;
+        this.decoders = decodersOf(config);
+        this.receiveBuffer = config.socketReceiveBuffer > 0 ? config.socketReceiveBuffer : config.lowLatency ? 64 * 1024 : 0;
+        this.sendBuffer = config.socketSendBuffer > 0 ? config.socketSendBuffer : config.lowLatency ? 16 * 1024 : 0;
+        setTcpNoDelay(config.tcpNoDelay || config.lowLatency);
+        // 崩溃或重启后不必等待 TIME_WAIT 结束
+        setReuseAddr(true);
+        setConnectionLostTimeout(lostTimeoutOf(config));
+        this.fallback = pipeline.openSession("default", stats.global, timers);
+        stats.global.setQueueDepthGauge(pipeline::getQueueDepth);
+        this.kineticScroll = config.kineticScroll;
+        this.kineticPointer = config.kineticPointer;
+        this.maxBatch = config.maxBatch > 0 ? config.maxBatch : 64;
+        this.decodeState = ThreadLocal.withInitial(() -> new DecodeState(maxBatch));
+        this.recorder = EventRecorder.open(config);
+        this.motionTtlMs = Math.max(0, config.motionTtlMs);
+        this.doubleTapGapMs = Math.max(0, config.doubleTapGapMs);
+        this.dropLate = "drop".equalsIgnoreCase(config.lateMotion == null ? "" : config.lateMotion.trim());
+        if (config.clockSyncMs > 0) {
+            timers.scheduleAtFixedRate(this::sendClockPings, config.clockSyncMs, config.clockSyncMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        this.udp = config.udpPort > 0 ? new UdpChannel(config.udpPort, this::dispatchUdp) : null;
+        this.helloPrefix = helloPrefix(false);
+        // 统计 HTTP 与 JMX 不在启动路径上，后台启动
+        Thread statsStart = new Thread(() -> stats.start(config), "stats-start");
+        statsStart.setDaemon(true);
+        statsStart.start();
+        pipeline.whenReady().thenRun(this::printInjectorDiagnostics);
+    }
+
+    private String helloPrefix(boolean withUdp) {
+        return "{\"type\":\"hello\",\"serverVersion\":\"1.0.0\","
+                + "\"features\":[\"mouse\",\"keyboard\",\"text\",\"binary\",\"flow\",\"batch\""
+                + (withUdp ? ",\"udp\"" : "") + "],"
+                + "\"binaryVersion\":" + BinaryProtocol.VERSION
+                + ",\"maxBatch\":" + maxBatch + ",\"batchFlushMs\":" + Math.max(0, config.batchFlushMs);
+    }
+
+    /** 由 Main 在 start() 之前设置，监听与注入器就绪时记入报告。 */
+    void setStartupReport(StartupReport report) {
+        this.startup = report;
+        pipeline.whenReady().thenRun(report::onInjectorReady);
     }
 
     @Override
     public void onStart() {
         System.out.println("WebSocket: 服务已启动");
+        printDiagnostics();
+        StartupReport report = startup;
+        if (report != null) report.onListening();
+        if (udp != null) {
+            try {
+                udp.start();
+                udpReady = true;
+                helloPrefix = helloPrefix(true);
+                System.out.println("UDP: 侧通道已启动，端口 " + udp.getPort());
+            } catch (Exception e) {
+                // 侧通道不可用时客户端仍可只用 WebSocket
+                udp.close();
+                System.out.println("UDP: 侧通道启动失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /** 关闭连接后停止注入线程（抬起仍按住的输入并关闭注入器）与统计出口；可重复调用。 */
+    @Override
+    public void stop(int timeout, String closeMessage) throws InterruptedException {
+        if (!stopped.compareAndSet(false, true)) return;
+        if (udp != null) udp.close();
+        try {
+            super.stop(timeout, closeMessage);
+        } finally {
+            timers.shutdown();
+            pipeline.shutdown();
+            stats.stop();
+            if (recorder != null) recorder.close();
+        }
     }
 
     @Override
@@ -33,135 +186,513 @@ public final class MobileMouseServer extends WebSocketServer {
             return;
         }
         System.out.println("WebSocket: 客户端已连接" + toPeer(conn));
-        JsonObject hello = new JsonObject();
-        hello.addProperty("type", "hello");
-        hello.addProperty("serverVersion", "1.0.0");
-        hello.add("features", JsonParser.parseString("[\"mouse\",\"keyboard\",\"text\"]"));
-        conn.send(hello.toString());
+        tuneSocket(conn);
+        StartupReport report = startup;
+        if (report != null) report.onFirstClient(pipeline.isReady());
+        String peer = toPeer(conn).trim();
+        Session session = pipeline.openSession(peer, stats.openClient(peer), timers);
+        // 积压时的 flow pause/resume 由入队线程或注入线程发出
+        session.control = conn::send;
+        // 无视 flow pause 把溢出队列也塞满：不可丢弃的命令无法再保证，断开该连接
+        session.onOverflow = () -> conn.close(CloseFrame.POLICY_VALIDATION, "输入积压超过上限");
+        session.stats.setClock(session.clock);
+        conn.setAttachment(session);
+        if (recorder != null) recorder.recordOpen(session.id, peer);
+        conn.send(hello(conn, session));
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        System.out.println("WebSocket: 客户端已断开" + toPeer(conn) + " code=" + code + " reason=" + reason);
+        System.out.println("WebSocket: 客户端已断开" + toPeer(conn) + " code=" + code + " reason=" + reason
+                + " (累计合并事件 " + pipeline.getCoalescedCount() + "/" + pipeline.getReceivedCount() + ")");
+        Object a = conn.getAttachment();
+        if (a instanceof Session) {
+            Session s = (Session)a;
+            // 队列取空后由注入线程释放该连接仍按住的键与按键
+            s.close();
+            if (recorder != null) recorder.recordClose(s.id);
+            if (udp != null && s.udpToken != 0) udp.unregister(s.udpToken);
+            stats.closeClient(s.stats);
+        }
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
+        onText(conn, sessionOf(conn), message, System.nanoTime());
+    }
+
+    /** 文本消息；conn 为 null 时（重放）不发送任何应答。 */
+    private void onText(WebSocket conn, Session session, String message, long recv) {
+        DecodeState st = decodeState.get();
+        InboundMessage msg = st.msg;
+        MessageStats ms = session.stats;
         try {
+            if (st.decoder.decode(message, msg, st.events)) {
+                if (msg.type == MessageType.BATCH) {
+                    dispatchBatch(conn, session, msg, st.events, st.decoder.eventCount(), st, recv);
+                } else {
+                    if (recorder != null) recorder.record(session.id, recv, msg);
+                    dispatch(conn, session, msg, st, recv);
+                    complete(session, msg, recv);
+                }
+                return;
+            }
+            // 低频类型或非常规写法：回退到树解析
             JsonObject root = JsonParser.parseString(message).getAsJsonObject();
-            String type = root.has("type") ? root.get("type").getAsString() : "";
-            switch (type) {
-                case "hello":
+            if (recorder != null) recorder.recordRaw(session.id, recv, message);
+            msg.fromTree(root);
+            switch (msg.type) {
+                case MessageType.HELLO:
                     // ignore for MVP
                     break;
-                case "ping":
-                    JsonObject pong = new JsonObject();
-                    pong.addProperty("type", "pong");
-                    if (root.has("ts")) pong.add("ts", root.get("ts"));
-                    conn.send(pong.toString());
-                    break;
-                case "touchstart":
-                    handleTouchStart(root);
-                    break;
-                case "touchmove":
-                    handleTouchMove(root);
-                    break;
-                case "touchend":
-                    handleTouchEnd(root);
-                    break;
-                case "tap":
-                    handleTap(root);
-                    break;
-                case "doubletap":
-                    handleDoubleTap(root);
+                case MessageType.KEY_EVENT:
+                    observe(session, msg, recv);
+                    handleKeyEvent(session, root);
                     break;
-                case "longpress":
-                    handleLongPress(root);
+                case MessageType.TEXT_INPUT:
+                    observe(session, msg, recv);
+                    handleTextInput(session, root);
                     break;
-                case "pinch":
-                    handlePinch(root);
+                case MessageType.STATS:
+                    if (conn != null) conn.send(stats.snapshot(ms, root.has("all") && root.get("all").getAsBoolean()).toString());
                     break;
-                case "rotate":
-                    handleRotate(root);
-                    break;
-                case "mouse_move":
-                    handleMouseMove(root);
-                    break;
-                case "mouse_button":
-                    handleMouseButton(root);
-                    break;
-                case "scroll":
-                    handleScroll(root);
-                    break;
-                case "roll":
-                    handleTwoMove(root);
-                    break;
-                case "drag":
-                    handleDrag(root);
-                    break;
-                case "key_event":
-                    handleKeyEvent(root);
-                    break;
-                case "text_input":
-                    handleTextInput(root);
-                    break;
-                default:
+                case MessageType.BATCH:
+                    handleBatchTree(conn, session, root, st, recv);
+                    return;
+                case MessageType.UNKNOWN:
+                    ms.onUnsupported();
+                    String type = root.has("type") ? root.get("type").getAsString() : "";
                     JsonObject err = new JsonObject();
                     err.addProperty("type", "error");
                     err.addProperty("code", "UNSUPPORTED");
                     err.addProperty("message", "Unknown type: " + type);
-                    conn.send(err.toString());
+                    if (conn != null) conn.send(err.toString());
+                    break;
+                default:
+                    dispatch(conn, session, msg, st, recv);
                     break;
             }
+            complete(session, msg, recv);
         } catch (Exception ex) {
+            ms.onError();
             System.out.println("消息解析错误: " + ex.getMessage());
         }
     }
 
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer frame) {
+        long recv = System.nanoTime();
+        DecodeState st = decodeState.get();
+        InboundMessage msg = st.msg;
+        Session session = sessionOf(conn);
+        MessageStats ms = session.stats;
+        try {
+            if (!BinaryProtocol.begin(frame)) {
+                ms.onError();
+                conn.send(BAD_FRAME_JSON);
+                return;
+            }
+            int r;
+            // 一帧内的多条记录整体入队，只唤醒一次注入线程
+            session.beginBatch();
+            try {
+                while ((r = BinaryProtocol.next(frame, msg)) == BinaryProtocol.RESULT_RECORD) {
+                    if (recorder != null) recorder.record(session.id, recv, msg);
+                    dispatch(conn, session, msg, st, recv);
+                    complete(session, msg, recv);
+                }
+            } finally {
+                session.endBatch();
+            }
+            if (r == BinaryProtocol.RESULT_ERROR) {
+                ms.onError();
+                conn.send(BAD_FRAME_JSON);
+            }
+        } catch (Exception ex) {
+            ms.onError();
+            System.out.println("二进制帧解析错误: " + ex.getMessage());
+        }
+    }
+
+    /** 计数并安排延迟结算：会注入的消息交给注入线程在执行完后记录，其余立即记录。 */
+    private void complete(Session session, InboundMessage msg, long recv) {
+        MessageStats ms = session.stats;
+        ms.onReceived(msg.type);
+        // 端到端延迟按本连接的时钟偏差校正，手机时钟快慢不影响
+        double sentMs = msg.hasTs ? session.clock.toLocalMs(msg.ts) : 0.0;
+        if (MessageType.injects(msg.type)) {
+            session.mark(ms, msg.type, recv, sentMs);
+        } else {
+            ms.onCompleted(msg.type, recv, sentMs, System.nanoTime());
+        }
+    }
+
+    /**
+     * 快速路径解码出的 batch：逐条分发后整体入队，批次本身记一条延迟标记。
+     * 事件未带 ts 时以批次 ts + dt 作为其时间戳。
+     */
+    private void dispatchBatch(WebSocket conn, Session s, InboundMessage batch, InboundMessage[] events, int n,
+                               DecodeState st, long recv) {
+        s.beginBatch();
+        try {
+            for (int i = 0; i < n; i++) {
+                InboundMessage e = events[i];
+                deriveTs(batch, e);
+                if (recorder != null) recorder.record(s.id, recv, e);
+                s.stats.onReceived(e.type);
+                dispatch(conn, s, e, st, recv);
+            }
+            complete(s, batch, recv);
+        } finally {
+            s.endBatch();
+        }
+    }
+
+    /** 树解析路径的 batch：事件可以包含 key_event、text_input 等低频类型。 */
+    private void handleBatchTree(WebSocket conn, Session s, JsonObject root, DecodeState st, long recv) {
+        JsonArray arr = root.has("events") && root.get("events").isJsonArray()
+                ? root.getAsJsonArray("events") : new JsonArray();
+        if (arr.size() > maxBatch) {
+            s.stats.onError();
+            if (conn != null) conn.send(BATCH_TOO_LARGE_JSON);
+            return;
+        }
+        InboundMessage batch = new InboundMessage();
+        batch.fromTree(root);
+        InboundMessage e = st.msg;
+        s.beginBatch();
+        try {
+            for (JsonElement el : arr) {
+                if (!el.isJsonObject()) {
+                    s.stats.onUnsupported();
+                    continue;
+                }
+                JsonObject o = el.getAsJsonObject();
+                e.fromTree(o);
+                deriveTs(batch, e);
+                switch (e.type) {
+                    case MessageType.KEY_EVENT:
+                        observe(s, e, recv);
+                        handleKeyEvent(s, o);
+                        break;
+                    case MessageType.TEXT_INPUT:
+                        observe(s, e, recv);
+                        handleTextInput(s, o);
+                        break;
+                    case MessageType.UNKNOWN:
+                    case MessageType.HELLO:
+                    case MessageType.STATS:
+                    case MessageType.BATCH:
+                        s.stats.onUnsupported();
+                        continue;
+                    default:
+                        dispatch(conn, s, e, st, recv);
+                        break;
+                }
+                s.stats.onReceived(e.type);
+            }
+            complete(s, batch, recv);
+        } finally {
+            s.endBatch();
+        }
+    }
+
+    private static void deriveTs(InboundMessage batch, InboundMessage e) {
+        if (e.hasTs || !batch.hasTs) return;
+        e.hasTs = true;
+        e.ts = batch.ts + (e.hasDt ? e.dt : 0.0);
+        // 回显时按数值输出
+        e.raw = null;
+        e.tsText = null;
+    }
+
+    private static int decodersOf(AppConfig config) {
+        if (config.decoders > 0) return config.decoders;
+        return config.lowLatency ? 1 : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static int lostTimeoutOf(AppConfig config) {
+        int t = Math.max(0, config.connectionLostTimeoutSec);
+        // 低延迟模式下尽快发现断线，及时释放该连接按住的键
+        return config.lowLatency && (t == 0 || t > 3) ? 3 : t;
+    }
+
+    /** 按配置设置连接的套接字缓冲区；首个连接时报告系统实际生效的值。 */
+    private void tuneSocket(WebSocket conn) {
+        if (!(conn instanceof WebSocketImpl)) return;
+        ByteChannel ch = ((WebSocketImpl)conn).getChannel();
+        if (!(ch instanceof SocketChannel)) return;
+        Socket socket = ((SocketChannel)ch).socket();
+        try {
+            if (receiveBuffer > 0) socket.setReceiveBufferSize(receiveBuffer);
+            if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
+            if (socketReported.compareAndSet(false, true)) {
+                System.out.println("网络: 连接实际 TCP_NODELAY=" + (socket.getTcpNoDelay() ? "on" : "off")
+                        + " SO_RCVBUF=" + socket.getReceiveBufferSize() + " SO_SNDBUF=" + socket.getSendBufferSize());
+            }
+        } catch (SocketException e) {
+            System.out.println("网络: 设置套接字参数失败: " + e.getMessage());
+        }
+    }
+
+    /** 启动时输出生效的网络设置；注入线程设置在注入器就绪后输出。 */
+    private void printDiagnostics() {
+        int lost = getConnectionLostTimeout();
+        System.out.println("网络: " + (config.lowLatency ? "低延迟模式, " : "") + "TCP_NODELAY=" + (isTcpNoDelay() ? "on" : "off")
+                + " SO_RCVBUF=" + (receiveBuffer > 0 ? String.valueOf(receiveBuffer) : "系统默认")
+                + " SO_SNDBUF=" + (sendBuffer > 0 ? String.valueOf(sendBuffer) : "系统默认")
+                + " 解码线程=" + decoders
+                + " 断线检测=" + (lost > 0 ? "每 " + lost + " s ping, " + lost * 3 / 2.0 + " s 无应答断开" : "关闭"));
+    }
+
+    private void printInjectorDiagnostics() {
+        System.out.println("注入: 专用线程 input-injector 优先级=" + pipeline.getThreadPriority()
+                + " 空转=" + pipeline.getSpinMicros() + " us 帧间隔=" + pipeline.getFrameNanos() / 1000 + " us"
+                + " 后端=" + config.backend);
+        if ("robot".equalsIgnoreCase(config.backend == null ? "robot" : config.backend.trim())
+                && (config.robotWaitForIdle || config.robotAutoDelayMs > 0)) {
+            System.out.println("注入: robotWaitForIdle=" + config.robotWaitForIdle + " robotAutoDelayMs="
+                    + config.robotAutoDelayMs + " 会增加每次注入的延迟");
+        }
+    }
+
+    /** 启用 UDP 侧通道时在 hello 中附带端口与本连接的令牌（16 位十六进制）。 */
+    private String hello(WebSocket conn, Session session) {
+        InetSocketAddress remote = conn.getRemoteSocketAddress();
+        if (udp == null || !udpReady || remote == null || remote.getAddress() == null) return helloPrefix + "}";
+        long token = udp.register(session, remote.getAddress());
+        if (token == 0) return helloPrefix + "}";
+        session.udpToken = token;
+        return helloPrefix + ",\"udpPort\":" + udp.getPort()
+                + ",\"udpToken\":\"" + String.format("%016x", token) + "\"}";
+    }
+
+    /** UDP 接收线程：只会收到移动与滚动记录。 */
+    private void dispatchUdp(Session s, InboundMessage m) {
+        long recv = System.nanoTime();
+        if (recorder != null) recorder.record(s.id, recv, m);
+        s.onActivity(recv);
+        // stampTs 归解码线程所有，这里只更新时钟估计
+        if (m.hasTs && isLate(s.clock.observe(m.ts, recv)) && expire(s, m)) return;
+        if (m.type == MessageType.MOUSE_MOVE) handleMouseMove(s, m);
+        else if (m.type == MessageType.SCROLL) handleScroll(s, m);
+    }
+
+    // --- 重放入口（见 Replay）：不经过网络，直接进入分发与注入 ---
+
+    Session replayOpen(String label) {
+        Session s = pipeline.openSession(label, stats.openClient(label), timers);
+        s.stats.setClock(s.clock);
+        return s;
+    }
+
+    void replayEvent(Session s, InboundMessage m) {
+        long recv = System.nanoTime();
+        dispatch(null, s, m, decodeState.get(), recv);
+        complete(s, m, recv);
+    }
+
+    void replayRaw(Session s, String json) {
+        onText(null, s, json, System.nanoTime());
+    }
+
+    void replayClose(Session s) {
+        s.close();
+        stats.closeClient(s.stats);
+    }
+
+    int getQueueDepth() {
+        return pipeline.getQueueDepth();
+    }
+
+    JsonObject statsSnapshot() {
+        return stats.snapshot(null, true);
+    }
+
+    private Session sessionOf(WebSocket conn) {
+        Object a = conn == null ? null : conn.getAttachment();
+        return a instanceof Session ? (Session)a : fallback;
+    }
+
+    /**
+     * 每条分发的消息：推迟该连接的超时释放；带 ts 的消息更新时钟估计，ts 同时作为随后入队的
+     * 按键/键盘命令的客户端时刻。返回该消息相对最快路径的滞后（毫秒）。
+     */
+    private double observe(Session s, InboundMessage m, long recv) {
+        s.onActivity(recv);
+        if (!m.hasTs) {
+            s.stampTs = 0;
+            return 0;
+        }
+        s.stampTs = m.ts;
+        return s.clock.observe(m.ts, recv);
+    }
+
+    private boolean isLate(double lagMs) {
+        return motionTtlMs > 0 && lagMs > motionTtlMs;
+    }
+
+    /** 滞后的移动/滚动按 lateMotion 合并或丢弃并返回 true；其他类型照常分发。 */
+    private boolean expire(Session s, InboundMessage m) {
+        int kind;
+        switch (m.type) {
+            case MessageType.MOUSE_MOVE:
+            case MessageType.DRAG:
+            case MessageType.TOUCHMOVE:
+                kind = InputCommand.MOVE;
+                break;
+            case MessageType.SCROLL:
+                kind = InputCommand.SCROLL;
+                break;
+            default:
+                return false;
+        }
+        s.cancelKinetic();
+        s.stats.onLate();
+        if (!dropLate) s.mergeLate(kind, m.dx, m.dy);
+        return true;
+    }
+
+    /** 定期向每个连接发送载荷为发送时刻的 ping 帧，pong 回来时得到往返时延。 */
+    private void sendClockPings() {
+        try {
+            for (WebSocket conn : getConnections()) {
+                if (!conn.isOpen() || !(conn.getAttachment() instanceof Session)) continue;
+                PingFrame f = new PingFrame();
+                ByteBuffer b = ByteBuffer.allocate(8);
+                b.putLong(0, System.nanoTime());
+                f.setPayload(b);
+                conn.sendFrame(f);
+            }
+        } catch (Exception e) {
+            // 连接恰好关闭，下一轮再发
+        }
+    }
+
+    @Override
+    public void onWebsocketPong(WebSocket conn, Framedata f) {
+        super.onWebsocketPong(conn, f);
+        ByteBuffer b = f.getPayloadData();
+        // 断线检测的 ping 载荷为空，只有本类发出的 8 字节载荷用于测往返
+        if (b == null || b.remaining() != 8 || !(conn.getAttachment() instanceof Session)) return;
+        ((Session)conn.getAttachment()).clock.onRtt(System.nanoTime() - b.getLong(b.position()));
+    }
+
+    private void dispatch(WebSocket conn, Session s, InboundMessage msg, DecodeState st, long recv) {
+        if (isLate(observe(s, msg, recv)) && expire(s, msg)) return;
+        switch (msg.type) {
+            case MessageType.PING:
+                if (conn == null) break;
+                StringBuilder sb = st.out;
+                sb.setLength(0);
+                if (msg.hasTs) {
+                    sb.append(PONG_TS_PREFIX);
+                    msg.appendTs(sb);
+                    sb.append('}');
+                    conn.send(sb.toString());
+                } else {
+                    conn.send(PONG_JSON);
+                }
+                break;
+            case MessageType.TOUCHSTART:
+                handleTouchStart(s, msg);
+                break;
+            case MessageType.TOUCHMOVE:
+                handleTouchMove(s, msg);
+                break;
+            case MessageType.TOUCHEND:
+                handleTouchEnd(s, msg);
+                break;
+            case MessageType.TAP:
+                handleTap(s, msg);
+                break;
+            case MessageType.DOUBLETAP:
+                handleDoubleTap(s, msg);
+                break;
+            case MessageType.LONGPRESS:
+                handleLongPress(s, msg);
+                break;
+            case MessageType.PINCH:
+                handlePinch(s, msg);
+                break;
+            case MessageType.ROTATE:
+                handleRotate(s, msg);
+                break;
+            case MessageType.MOUSE_MOVE:
+                handleMouseMove(s, msg);
+                break;
+            case MessageType.MOUSE_BUTTON:
+                handleMouseButton(s, msg);
+                break;
+            case MessageType.SCROLL:
+                handleScroll(s, msg);
+                break;
+            case MessageType.ROLL:
+                handleTwoMove(s, msg);
+                break;
+            case MessageType.DRAG:
+                handleDrag(s, msg);
+                break;
+            case MessageType.KEY_EVENT:
+                handleKeyCode(s, msg);
+                break;
+            case MessageType.TAKEOVER:
+                s.requestTakeover();
+                break;
+            default:
+                break;
+        }
+    }
+
     @Override
     public void onError(WebSocket conn, Exception ex) {
         System.out.println("WebSocket 错误: " + ex.getMessage());
     }
 
-    private void handleMouseMove(JsonObject root) {
-        double dx = root.has("dx") ? root.get("dx").getAsDouble() : 0.0;
-        double dy = root.has("dy") ? root.get("dy").getAsDouble() : 0.0;
-        injector.moveRelative((int)Math.round(dx), (int)Math.round(dy));
+    private void handleMouseMove(Session s, InboundMessage m) {
+        s.cancelKinetic();
+        s.moveRelative(m.dx, m.dy);
     }
 
-    private void handleDrag(JsonObject root) {
+    private void handleDrag(Session s, InboundMessage m) {
         // MVP：拖拽按相对移动处理，按键状态由客户端控制
-        handleMouseMove(root);
+        handleMouseMove(s, m);
     }
 
-    private void handleMouseButton(JsonObject root) {
-        String button = root.has("button") ? safe(root.get("button").getAsString(), "left") : "left";
-        String action = root.has("action") ? safe(root.get("action").getAsString(), "down") : "down";
-        injector.mouseButton(button, action);
+    private void handleMouseButton(Session s, InboundMessage m) {
+        s.cancelKinetic();
+        s.mouseButton(m.button, m.action);
     }
 
-    private void handleScroll(JsonObject root) {
-        int dx = root.has("dx") ? (int)Math.round(root.get("dx").getAsDouble()) : 0;
-        int dy = root.has("dy") ? (int)Math.round(root.get("dy").getAsDouble()) : 0;
-        injector.scroll(dx, dy);
+    private void handleScroll(Session s, InboundMessage m) {
+        s.cancelKinetic();
+        s.scroll(m.dx, m.dy);
+        if (kineticScroll && (m.vx != 0 || m.vy != 0)) {
+            s.kinetic.fling(KineticScroller.WHEEL, m.vx, m.vy);
+        }
     }
 
-    private void handleTwoMove(JsonObject root) {
-        double dx = root.has("ds") ? root.get("ds").getAsDouble() : 0.0;
-        double dy = root.has("dy") ? root.get("dy").getAsDouble() : 0.0;
-        int vSteps = (int)Math.round(dy * 10); // 调整因子以匹配触摸手势强度
-        int hSteps = (int)Math.round(dx * 10);
-        if (vSteps != 0) {
-            injector.scroll(0, vSteps);
+    private void handleTwoMove(Session s, InboundMessage m) {
+        s.onGesture(System.nanoTime());
+        s.cancelLongPress();
+        s.cancelKinetic();
+        double dx = m.ds;
+        double dy = m.dy;
+        // 调整因子以匹配触摸手势强度；垂直方向的小数格由注入器累加
+        if (dy != 0) {
+            s.scroll(0, dy * 10);
         }
+        int hSteps = s.rollXSteps.add(dx * 10);
         if (hSteps != 0) {
-            injector.setModifiers(false, false, true, false, true); // press SHIFT
-            injector.scroll(0, hSteps);
-            injector.setModifiers(false, false, true, false, false); // release SHIFT
+            s.modifiedScroll(InputCommand.MOD_SHIFT, 0, hSteps); // SHIFT + 滚轮，Shift 在连续帧之间保持按住
+        }
+        // 释放帧带速度时交给惯性引擎继续垂直滚动（水平方向依赖 Shift，不做惯性）
+        if (kineticScroll && m.vy != 0) {
+            s.kinetic.fling(KineticScroller.WHEEL, 0, m.vy * 10);
         }
     }
 
-    private void handleKeyEvent(JsonObject root) {
+    private void handleKeyEvent(Session s, JsonObject root) {
         String key = root.has("key") ? root.get("key").getAsString() : "";
         String action = root.has("action") ? root.get("action").getAsString() : "down";
         JsonObject mod = root.has("mod") && root.get("mod").isJsonObject() ? root.get("mod").getAsJsonObject() : new JsonObject();
@@ -171,76 +702,105 @@ public final class MobileMouseServer extends WebSocketServer {
         boolean meta = mod.has("meta") && mod.get("meta").getAsBoolean();
 
         if ("down".equals(action)) {
-            injector.setModifiers(ctrl, alt, shift, meta, true);
-            injector.keyEvent(key, true);
+            s.setModifiers(ctrl, alt, shift, meta, true);
+            s.keyEvent(key, true);
         } else if ("up".equals(action)) {
-            injector.keyEvent(key, false);
-            injector.setModifiers(ctrl, alt, shift, meta, false);
+            s.keyEvent(key, false);
+            s.setModifiers(ctrl, alt, shift, meta, false);
+        }
+    }
+
+    private void handleKeyCode(Session s, InboundMessage m) {
+        int code = KeyMap.fromDomKeyCode(m.keyCode);
+        boolean ctrl = (m.mods & InputCommand.MOD_CTRL) != 0;
+        boolean alt = (m.mods & InputCommand.MOD_ALT) != 0;
+        boolean shift = (m.mods & InputCommand.MOD_SHIFT) != 0;
+        boolean meta = (m.mods & InputCommand.MOD_META) != 0;
+        if (m.action == InputInjector.ACTION_DOWN) {
+            s.setModifiers(ctrl, alt, shift, meta, true);
+            s.keyCode(code, true);
+        } else {
+            s.keyCode(code, false);
+            s.setModifiers(ctrl, alt, shift, meta, false);
         }
     }
 
-    private void handleTextInput(JsonObject root) {
+    private void handleTextInput(Session s, JsonObject root) {
         String text = root.has("text") ? root.get("text").getAsString() : null;
         if (text != null && !text.isEmpty()) {
-            injector.typeText(text);
+            s.typeText(text);
         }
     }
 
-    // --- 新增手势类型处理 ---
-    private volatile boolean touching = false;
+    // --- 新增手势类型处理（手势状态在各自的 Session 中） ---
 
-    private void handleTouchStart(JsonObject root) {
-        touching = true;
+    private void handleTouchStart(Session s, InboundMessage m) {
+        s.onGesture(System.nanoTime());
+        s.touching = true;
+        s.cancelKinetic();
+        s.resetGestureSteps();
+        s.armLongPress();
         // 仅标记开始，PC 侧不主动按下左键；具体点击/拖拽由 tap/drag 单独事件触发
     }
 
-    private void handleTouchMove(JsonObject root) {
-        double dx = root.has("dx") ? root.get("dx").getAsDouble() : 0.0;
-        double dy = root.has("dy") ? root.get("dy").getAsDouble() : 0.0;
-        injector.moveRelative((int)Math.round(dx), (int)Math.round(dy));
+    private void handleTouchMove(Session s, InboundMessage m) {
+        s.onGesture(System.nanoTime());
+        s.cancelKinetic();
+        s.pressMoved(m.dx, m.dy);
+        s.moveRelative(m.dx, m.dy);
     }
 
-    private void handleTouchEnd(JsonObject root) {
-        touching = false;
-        // 可根据 vx/vy 做惯性滚动，当前版本不在 PC 端处理
+    private void handleTouchEnd(Session s, InboundMessage m) {
+        s.cancelLongPress();
+        s.touching = false;
+        s.resetGestureSteps();
+        s.endGestureModifiers();
+        // 释放速度（像素/秒）：开启 kineticPointer 时由 PC 端继续滑行指针
+        if (kineticPointer && (m.vx != 0 || m.vy != 0)) {
+            s.kinetic.fling(KineticScroller.POINTER, m.vx, m.vy);
+        }
     }
 
-    private void handleTap(JsonObject root) {
-        injector.mouseButton("left", "click");
+    private void handleTap(Session s, InboundMessage m) {
+        s.cancelKinetic();
+        s.cancelLongPress();
+        // 服务端长按已经右键单击过，抬手的 tap 不再左键单击
+        if (s.longPressFired()) return;
+        s.mouseButton("left", "click");
     }
 
-    private void handleDoubleTap(JsonObject root) {
-        injector.mouseButton("left", "click");
-        try { Thread.sleep(40); } catch (InterruptedException ignored) {}
-        injector.mouseButton("left", "click");
+    private void handleDoubleTap(Session s, InboundMessage m) {
+        s.cancelLongPress();
+        s.mouseButton("left", "click");
+        // 第二下由时间轮按 doubleTapGapMs 入队，不阻塞解码线程，随后的移动照常处理
+        s.later(doubleTapGapMs, () -> s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK, 0));
     }
 
-    private void handleLongPress(JsonObject root) {
-        injector.mouseButton("right", "click");
+    private void handleLongPress(Session s, InboundMessage m) {
+        s.cancelLongPress();
+        if (s.longPressFired()) return;
+        s.mouseButton("right", "click");
     }
 
-    private void handlePinch(JsonObject root) {
+    private void handlePinch(Session s, InboundMessage m) {
         // 根据 dscale 映射缩放方向；正为放大，负为缩小（经验值）
-        double dscale = root.has("dscale") ? root.get("dscale").getAsDouble() : 0.0;
-        int steps = (int)Math.round(dscale * 6); // 调整灵敏度因子
+        s.onGesture(System.nanoTime());
+        s.cancelLongPress();
+        double dscale = m.dscale;
+        int steps = s.pinchSteps.add(dscale * 6); // 调整灵敏度因子；不足一格时累加，不按修饰键
         if (steps == 0) return;
-        injector.setModifiers(true, false, false, false, true); // press CTRL
-        injector.scroll(0, -steps); // 方向可能需按应用调整；这里约定负为缩放放大
-        injector.setModifiers(true, false, false, false, false); // release CTRL
+        // CTRL + 滚轮；Ctrl 在整个 pinch 期间保持按住，停顿或抬手后才抬起
+        s.modifiedScroll(InputCommand.MOD_CTRL, 0, -steps); // 方向可能需按应用调整；这里约定负为缩放放大
     }
 
-    private void handleRotate(JsonObject root) {
+    private void handleRotate(Session s, InboundMessage m) {
         // 旋转映射为水平滚动近似：按住 SHIFT + 垂直滚动
-        double dr = root.has("dr") ? root.get("dr").getAsDouble() : 0.0;
-        int steps = (int)Math.round(dr * 8);
+        s.onGesture(System.nanoTime());
+        s.cancelLongPress();
+        double dr = m.dr;
+        int steps = s.rotateSteps.add(dr * 8);
         if (steps == 0) return;
-        injector.setModifiers(false, false, true, false, true); // press SHIFT
-        injector.scroll(0, steps);
-        injector.setModifiers(false, false, true, false, false); // release SHIFT
-    }
-
-    private String safe(String s, String def) {
-        return (s == null || s.isEmpty()) ? def : s;
+        s.modifiedScroll(InputCommand.MOD_SHIFT, 0, steps);
     }
 
     private String toPeer(WebSocket conn) {
@@ -0,0 +1,140 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.event.KeyEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 修饰键状态机：按持有者引用计数，只在某个修饰键的实际状态需要改变时才调用后端按下或抬起。
+ * 持有者为会话编号（key_event 的 mod、作为普通键按下的 Ctrl/Shift 等）或文本线程 {@link #TEXT}；
+ * 实际按住的是所有持有者与临时持有的并集。
+ *
+ * <p>临时持有：手势帧（pinch 的 Ctrl、rotate/roll 的 Shift）的修饰键不在每帧之后抬起，
+ * 在连续帧之间保持按住；key_event 的 mod 抬起后同样临时停留，连续的组合键之间不反复按下/抬起。
+ * 停顿 modifierLingerMs、手势结束或注入其他按键、点击、普通滚动、文本之前才抬起，
+ * 不会让这些输入意外带上修饰键。
+ * 持有者断开时整体清除其计数，不会留下按住的键。注入线程与文本线程都会调用，方法均同步。
+ */
+final class ModifierTracker {
+    static final int TEXT = -1;
+
+    // 下标与 InputCommand.MOD_* 的位序一致：Ctrl、Alt、Shift、Meta
+    private static final int[] CODES = {KeyEvent.VK_CONTROL, KeyEvent.VK_ALT, KeyEvent.VK_SHIFT, KeyEvent.VK_META};
+
+    private final InputBackend backend;
+    private final long lingerNanos;
+    private final Map<Integer, int[]> holders = new HashMap<>();
+    private int pressed = 0;
+    private int transientMask = 0;
+    private long transientUntil = 0;
+
+    ModifierTracker(InputBackend backend, long lingerMs) {
+        this.backend = backend;
+        this.lingerNanos = Math.max(0, lingerMs) * 1_000_000L;
+    }
+
+    /** 键码对应的修饰键位，不是受管理的修饰键时返回 0。 */
+    static int bitOf(int keyCode) {
+        for (int i = 0; i < CODES.length; i++) {
+            if (CODES[i] == keyCode) return 1 << i;
+        }
+        return 0;
+    }
+
+    /** 持有者按下（计数加一）或抬起（计数减一）mask 中的修饰键；手势仍临时持有的键不会被抬起。 */
+    synchronized void hold(int holder, int mask, boolean down) {
+        int[] c = holders.get(holder);
+        if (c == null) {
+            if (!down) return;
+            c = new int[CODES.length];
+            holders.put(holder, c);
+        }
+        boolean empty = true;
+        for (int i = 0; i < CODES.length; i++) {
+            if ((mask & (1 << i)) != 0) c[i] = down ? c[i] + 1 : Math.max(0, c[i] - 1);
+            if (c[i] != 0) empty = false;
+        }
+        if (empty) holders.remove(holder);
+        apply();
+    }
+
+    /**
+     * key_event 的 mod：计数同 {@link #hold}；抬起时该持有者实际按住的键转为临时持有并重新计时，
+     * 下一个带同样 mod 的按键接着持有，不会先抬起再按下。
+     */
+    synchronized void holdLingering(int holder, int mask, boolean down, long now) {
+        int[] c = holders.get(holder);
+        if (!down && c != null && lingerNanos > 0) {
+            int linger = 0;
+            for (int i = 0; i < CODES.length; i++) {
+                if ((mask & (1 << i)) != 0 && c[i] > 0) linger |= 1 << i;
+            }
+            if (linger != 0) {
+                transientMask |= linger;
+                transientUntil = now + lingerNanos;
+            }
+        }
+        hold(holder, mask, down);
+    }
+
+    /** 清除持有者的全部计数（断开、失去控制权或超时）。 */
+    synchronized void releaseHolder(int holder) {
+        if (holders.remove(holder) != null) apply();
+    }
+
+    /** 手势帧：临时持有恰好 mask（其他临时持有的键先抬起），并从现在起重新计时。 */
+    synchronized void useTransient(int mask, long now) {
+        transientMask = mask;
+        transientUntil = now + lingerNanos;
+        apply();
+    }
+
+    /** 抬起所有临时持有的修饰键（显式持有的不受影响）。 */
+    synchronized void endTransient() {
+        if (transientMask == 0) return;
+        transientMask = 0;
+        apply();
+    }
+
+    /** 停顿超过 modifierLingerMs 时抬起临时持有；返回距离下次检查的纳秒数，没有临时持有时为 0。 */
+    synchronized long releaseIdle(long now) {
+        if (transientMask == 0) return 0;
+        long left = transientUntil - now;
+        if (left > 0) return left;
+        endTransient();
+        return 0;
+    }
+
+    boolean lingers() {
+        return lingerNanos > 0;
+    }
+
+    synchronized void releaseAll() {
+        holders.clear();
+        transientMask = 0;
+        apply();
+    }
+
+    private int held() {
+        int m = 0;
+        for (int[] c : holders.values()) {
+            for (int i = 0; i < CODES.length; i++) {
+                if (c[i] > 0) m |= 1 << i;
+            }
+        }
+        return m;
+    }
+
+    private void apply() {
+        int want = held() | transientMask;
+        int press = want & ~pressed;
+        int release = pressed & ~want;
+        for (int i = 0; i < CODES.length; i++) {
+            if ((press & (1 << i)) != 0) backend.keyPress(CODES[i]);
+        }
+        for (int i = CODES.length - 1; i >= 0; i--) {
+            if ((release & (1 << i)) != 0) backend.keyRelease(CODES[i]);
+        }
+        pressed = want;
+    }
+}
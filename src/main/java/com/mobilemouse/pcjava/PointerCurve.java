@@ -0,0 +1,51 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 指针加速曲线：根据移动速度（客户端单位/毫秒）给出位移倍率，最终倍率再乘以 sensitivity。
+ * <ul>
+ *   <li>linear：恒定倍率，与旧版行为一致</li>
+ *   <li>power：速度超过 accelThreshold 后按 (v/threshold)^accelExponent 放大，上限 accelMax</li>
+ *   <li>sigmoid：在 accelThreshold 附近平滑过渡到 accelMax，陡峭度由 accelExponent 控制</li>
+ * </ul>
+ */
+final class PointerCurve {
+    private static final int LINEAR = 0;
+    private static final int POWER = 1;
+    private static final int SIGMOID = 2;
+
+    private final int kind;
+    private final double sensitivity;
+    private final double threshold;
+    private final double exponent;
+    private final double max;
+
+    PointerCurve(AppConfig config) {
+        String name = config.accelCurve == null ? "linear" : config.accelCurve.trim().toLowerCase();
+        switch (name) {
+            case "power": kind = POWER; break;
+            case "sigmoid": kind = SIGMOID; break;
+            default: kind = LINEAR; break;
+        }
+        sensitivity = config.sensitivity <= 0 ? 1.0 : config.sensitivity;
+        threshold = config.accelThreshold <= 0 ? 1.0 : config.accelThreshold;
+        exponent = config.accelExponent <= 0 ? 1.0 : config.accelExponent;
+        max = Math.max(1.0, config.accelMax);
+    }
+
+    boolean isLinear() {
+        return kind == LINEAR;
+    }
+
+    /** speed 为本次位移的速度，单位：客户端单位/毫秒。 */
+    double factor(double speed) {
+        switch (kind) {
+            case POWER:
+                if (speed <= threshold) return sensitivity;
+                return sensitivity * Math.min(max, Math.pow(speed / threshold, exponent));
+            case SIGMOID:
+                return sensitivity * (1.0 + (max - 1.0) / (1.0 + Math.exp(-(speed - threshold) * exponent)));
+            default:
+                return sensitivity;
+        }
+    }
+}
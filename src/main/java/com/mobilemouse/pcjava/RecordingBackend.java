@@ -0,0 +1,146 @@
+package com.mobilemouse.pcjava;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存录制后端：不触碰系统输入，只记录收到的调用并维护一个虚拟指针。
+ * 用于无显示环境下的测试、基准与压测；capacity 为 0 时只计数不保留记录（近似空操作）。
+ */
+public final class RecordingBackend implements InputBackend {
+    public static final int MOVE = 1;
+    public static final int MOVE_BY = 2;
+    public static final int PRESS = 3;
+    public static final int RELEASE = 4;
+    public static final int WHEEL = 5;
+    public static final int HWHEEL = 6;
+    public static final int KEY_PRESS = 7;
+    public static final int KEY_RELEASE = 8;
+    public static final int TEXT = 9;
+
+    /** 一次后端调用。 */
+    public static final class Record {
+        public final long nanos;
+        public final int kind;
+        public final int a;
+        public final int b;
+        public final String text;
+
+        Record(int kind, int a, int b, String text) {
+            this.nanos = System.nanoTime();
+            this.kind = kind;
+            this.a = a;
+            this.b = b;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "(" + a + "," + b + (text == null ? "" : "," + text) + ")";
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Record> records = new ArrayDeque<>();
+    private final AtomicLong calls = new AtomicLong();
+    private volatile int x = 960, y = 540;
+
+    public RecordingBackend(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /** 当前保留的记录快照（按时间顺序）。 */
+    public List<Record> records() {
+        synchronized (records) {
+            return new ArrayList<>(records);
+        }
+    }
+
+    public void clear() {
+        synchronized (records) {
+            records.clear();
+        }
+        calls.set(0);
+    }
+
+    @Override
+    public boolean isRelativePointer() {
+        return false;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        this.x = x;
+        this.y = y;
+        record(MOVE, x, y, null);
+    }
+
+    @Override
+    public void mouseMoveBy(int dx, int dy) {
+        x += dx;
+        y += dy;
+        record(MOVE_BY, dx, dy, null);
+    }
+
+    @Override
+    public long pointerPosition() {
+        return DisplayTopology.pack(x, y);
+    }
+
+    @Override
+    public void mousePress(int button) {
+        record(PRESS, button, 0, null);
+    }
+
+    @Override
+    public void mouseRelease(int button) {
+        record(RELEASE, button, 0, null);
+    }
+
+    @Override
+    public void mouseWheel(int steps) {
+        record(WHEEL, steps, 0, null);
+    }
+
+    @Override
+    public boolean supportsHorizontalWheel() {
+        return true;
+    }
+
+    @Override
+    public void mouseWheelHorizontal(int steps) {
+        record(HWHEEL, steps, 0, null);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        record(KEY_PRESS, keyCode, 0, null);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        record(KEY_RELEASE, keyCode, 0, null);
+    }
+
+    @Override
+    public boolean typeUnicode(String text) {
+        record(TEXT, text.length(), 0, text);
+        return true;
+    }
+
+    private void record(int kind, int a, int b, String text) {
+        calls.incrementAndGet();
+        if (capacity == 0) return;
+        Record r = new Record(kind, a, b, text);
+        synchronized (records) {
+            if (records.size() >= capacity) records.pollFirst();
+            records.addLast(r);
+        }
+    }
+}
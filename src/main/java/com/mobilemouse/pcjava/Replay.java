@@ -0,0 +1,194 @@
+package com.mobilemouse.pcjava;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 重放 {@link EventRecorder} 记录的事件日志，用于复现问题与压测：
+ * <pre>
+ * java -cp mobilemouse.jar com.mobilemouse.pcjava.Replay &lt;log&gt; [1|N|max] [--ws ws://host:8988/ws] [--backend robot|recording|uinput]
+ * </pre>
+ * 默认直接送入本进程的分发器，按 config.json 的注入后端注入（--backend 可覆盖）；
+ * 指定 --ws 时按原连接分别建立 WebSocket 客户端发往目标服务。速度为 1（原速）、N 倍或 max（不等待）。
+ */
+public final class Replay {
+    private final double speed;
+    private long firstNanos = -1;
+    private long wallStart;
+    private long events = 0;
+
+    private Replay(double speed) {
+        this.speed = speed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("用法: Replay <log> [1|N|max] [--ws ws://host:8988/ws] [--backend robot|recording|uinput]");
+            return;
+        }
+        String log = args[0];
+        double speed = 1.0;
+        String ws = null;
+        String backend = null;
+        for (int i = 1; i < args.length; i++) {
+            String a = args[i];
+            if ("--ws".equals(a) && i + 1 < args.length) ws = args[++i];
+            else if ("--backend".equals(a) && i + 1 < args.length) backend = args[++i];
+            else if ("max".equalsIgnoreCase(a)) speed = 0;
+            else {
+                try { speed = Double.parseDouble(a.endsWith("x") ? a.substring(0, a.length() - 1) : a); }
+                catch (Exception ignored) {}
+            }
+        }
+        Replay r = new Replay(speed);
+        long started = System.nanoTime();
+        if (ws != null) r.toWebSocket(log, ws);
+        else r.toDispatcher(log, backend);
+        System.out.println("重放完成: " + r.events + " 条事件，用时 " + (System.nanoTime() - started) / 1_000_000L + " ms");
+        System.exit(0);
+    }
+
+    /** 按记录的相对时间等待到该条目应发出的时刻；speed 为 0 时不等待。 */
+    private void pace(long nanos) {
+        if (firstNanos < 0) {
+            firstNanos = nanos;
+            wallStart = System.nanoTime();
+        }
+        if (speed <= 0) return;
+        long target = wallStart + (long)((nanos - firstNanos) / speed);
+        long wait;
+        while ((wait = target - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+    }
+
+    private void toDispatcher(String log, String backend) throws Exception {
+        AppConfig config = AppConfig.loadOrCreate();
+        if (backend != null) config.backend = backend;
+        // 重放进程不再记录、不占用侧通道与统计端口
+        config.recordFile = "";
+        config.udpPort = 0;
+        config.statsHttpPort = 0;
+        config.statsJmx = false;
+        // 非原速重放时到达间隔本就与客户端 ts 不符，不再按 ts 判定滞后或重排按键间隔
+        if (speed != 1.0) {
+            config.motionTtlMs = 0;
+            config.inputTimingMaxMs = 0;
+        }
+        if ("robot".equalsIgnoreCase(config.backend == null ? "robot" : config.backend.trim())) {
+            System.setProperty("java.awt.headless", "false");
+        }
+        MobileMouseServer server = new MobileMouseServer(0, config);
+        Map<Integer, Session> sessions = new HashMap<>();
+        EventRecorder.read(log, (kind, conn, nanos, msg, text) -> {
+            pace(nanos);
+            Session s = sessions.get(conn);
+            if (kind == EventRecorder.KIND_CLOSE) {
+                if (s != null) server.replayClose(sessions.remove(conn));
+                return;
+            }
+            if (s == null) {
+                s = server.replayOpen(kind == EventRecorder.KIND_OPEN ? text : "replay-" + conn);
+                sessions.put(conn, s);
+            }
+            if (kind == EventRecorder.KIND_EVENT) server.replayEvent(s, msg);
+            else if (kind == EventRecorder.KIND_RAW) server.replayRaw(s, text);
+            else return;
+            events++;
+        });
+        for (Session s : sessions.values()) server.replayClose(s);
+        // 等注入线程取空队列，再输出统计
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (server.getQueueDepth() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        Thread.sleep(100);
+        System.out.println(server.statsSnapshot());
+    }
+
+    private void toWebSocket(String log, String url) throws Exception {
+        URI uri = new URI(url);
+        Map<Integer, WebSocketClient> clients = new HashMap<>();
+        StringBuilder sb = new StringBuilder(128);
+        EventRecorder.read(log, (kind, conn, nanos, msg, text) -> {
+            pace(nanos);
+            WebSocketClient c = clients.get(conn);
+            if (kind == EventRecorder.KIND_CLOSE) {
+                if (c != null) clients.remove(conn).closeBlocking();
+                return;
+            }
+            if (c == null) {
+                c = connect(uri);
+                clients.put(conn, c);
+            }
+            if (kind == EventRecorder.KIND_EVENT) {
+                if (msg.type == MessageType.KEY_EVENT) c.send(keyFrame(msg));
+                else c.send(toJson(msg, sb));
+            } else if (kind == EventRecorder.KIND_RAW) {
+                c.send(text);
+            } else {
+                return;
+            }
+            events++;
+        });
+        for (WebSocketClient c : clients.values()) c.closeBlocking();
+    }
+
+    private static WebSocketClient connect(URI uri) throws InterruptedException {
+        WebSocketClient c = new WebSocketClient(uri) {
+            @Override public void onOpen(ServerHandshake h) {}
+            @Override public void onMessage(String message) {}
+            @Override public void onClose(int code, String reason, boolean remote) {}
+            @Override public void onError(Exception ex) {
+                System.out.println("重放连接错误: " + ex.getMessage());
+            }
+        };
+        if (!c.connectBlocking()) throw new IllegalStateException("无法连接 " + uri);
+        return c;
+    }
+
+    /** 解码后的事件还原为 JSON（只写非零字段）。 */
+    static String toJson(InboundMessage m, StringBuilder sb) {
+        sb.setLength(0);
+        sb.append("{\"type\":\"").append(MessageType.NAMES[m.type]).append('"');
+        field(sb, "dx", m.dx);
+        field(sb, "dy", m.dy);
+        field(sb, "ds", m.ds);
+        field(sb, "dr", m.dr);
+        field(sb, "dscale", m.dscale);
+        field(sb, "vx", m.vx);
+        field(sb, "vy", m.vy);
+        if (m.type == MessageType.MOUSE_BUTTON) {
+            sb.append(",\"button\":\"").append(m.button == InputInjector.BUTTON_RIGHT ? "right"
+                    : m.button == InputInjector.BUTTON_MIDDLE ? "middle" : "left").append('"');
+            sb.append(",\"action\":\"").append(m.action == InputInjector.ACTION_UP ? "up"
+                    : m.action == InputInjector.ACTION_CLICK ? "click" : "down").append('"');
+        }
+        if (m.hasTs) {
+            sb.append(",\"ts\":");
+            if (m.ts == Math.rint(m.ts)) sb.append((long)m.ts);
+            else sb.append(m.ts);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void field(StringBuilder sb, String name, double v) {
+        if (v == 0) return;
+        sb.append(",\"").append(name).append("\":");
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) sb.append((long)v);
+        else sb.append(v);
+    }
+
+    /** 二进制 KEY 记录（DOM keyCode）按原格式重新编码。 */
+    static ByteBuffer keyFrame(InboundMessage m) {
+        ByteBuffer b = ByteBuffer.allocate(1 + 1 + 8 + 4);
+        b.put((byte)BinaryProtocol.VERSION);
+        if (m.hasTs) b.put((byte)(BinaryProtocol.OP_KEY | BinaryProtocol.FLAG_TS)).putLong((long)m.ts);
+        else b.put((byte)BinaryProtocol.OP_KEY);
+        b.putShort((short)m.keyCode).put((byte)(m.action == InputInjector.ACTION_UP ? 1 : 0)).put((byte)m.mods);
+        b.flip();
+        return b;
+    }
+}
@@ -0,0 +1,96 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.AWTException;
+import java.awt.MouseInfo;
+import java.awt.Point;
+import java.awt.PointerInfo;
+import java.awt.Robot;
+import java.awt.event.InputEvent;
+
+/**
+ * 基于 java.awt.Robot 的后端，Windows/macOS/X11 通用。
+ */
+final class RobotBackend implements InputBackend {
+    private final Robot robot;
+
+    RobotBackend(AppConfig config) {
+        try {
+            robot = new Robot();
+            robot.setAutoWaitForIdle(config.robotWaitForIdle);
+            robot.setAutoDelay(Math.max(0, config.robotAutoDelayMs));
+        } catch (AWTException e) {
+            throw new RuntimeException("无法初始化输入注入: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isRelativePointer() {
+        return false;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        robot.mouseMove(x, y);
+    }
+
+    @Override
+    public void mouseMoveBy(int dx, int dy) {
+        long p = pointerPosition();
+        if (p == Long.MIN_VALUE) return;
+        robot.mouseMove(DisplayTopology.unpackX(p) + dx, DisplayTopology.unpackY(p) + dy);
+    }
+
+    @Override
+    public long pointerPosition() {
+        PointerInfo info = MouseInfo.getPointerInfo();
+        if (info == null) return Long.MIN_VALUE;
+        Point p = info.getLocation();
+        return DisplayTopology.pack(p.x, p.y);
+    }
+
+    @Override
+    public void mousePress(int button) {
+        robot.mousePress(mask(button));
+    }
+
+    @Override
+    public void mouseRelease(int button) {
+        robot.mouseRelease(mask(button));
+    }
+
+    @Override
+    public void mouseWheel(int steps) {
+        robot.mouseWheel(steps);
+    }
+
+    @Override
+    public boolean supportsHorizontalWheel() {
+        // Java AWT Robot 不支持水平滚动
+        return false;
+    }
+
+    @Override
+    public void mouseWheelHorizontal(int steps) {
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        // 媒体/浏览器等私有键码 Robot 无法注入
+        if (KeyMap.isExtra(keyCode)) return;
+        robot.keyPress(keyCode);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        if (KeyMap.isExtra(keyCode)) return;
+        robot.keyRelease(keyCode);
+    }
+
+    private static int mask(int button) {
+        switch (button) {
+            case InputInjector.BUTTON_RIGHT: return InputEvent.BUTTON3_DOWN_MASK;
+            case InputInjector.BUTTON_MIDDLE: return InputEvent.BUTTON2_DOWN_MASK;
+            default: return InputEvent.BUTTON1_DOWN_MASK;
+        }
+    }
+}
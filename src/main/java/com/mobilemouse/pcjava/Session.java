@@ -0,0 +1,665 @@
+package com.mobilemouse.pcjava;
+
+import java.awt.event.KeyEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 一个客户端连接的会话：自己的有界注入队列、手势状态与统计。
+ * 入队方法由该连接的解码线程（以及它的惯性任务）调用；队列由 {@link InjectionPipeline}
+ * 的注入线程与其他会话轮流取出，并按仲裁策略决定是否注入。
+ * 会话关闭后，注入线程在队列取空时释放它仍按住的键与鼠标按键。
+ *
+ * <p>背压：队列深度超过高水位后，新的移动/滚动不再入队而是累加到旁路（计为 shed），
+ * 等队列取空时一次注入；按键、键盘、文本与统计标记永不丢弃，环形队列满时改入溢出队列。
+ * 溢出队列同样是预分配的环形队列（sessionOverflow 倍于 sessionQueue），再满说明客户端无视 flow pause，
+ * 不可丢弃的命令无法再保证，于是关闭该连接。越过高水位时向客户端发送 flow pause，回落到低水位以下时发送 flow resume 与建议发送频率。
+ *
+ * <p>定时动作（双击的第二下、长按、按键自动重复、超时释放、手势结束）登记在共用的 {@link TimerWheel} 上，
+ * 到期时由时间轮线程入队，处理器从不阻塞。
+ */
+final class Session {
+    final int id;
+    final String label;
+    final MessageStats stats;
+    final EventRing ring;
+    private final InjectionPipeline pipeline;
+
+    volatile boolean closed = false;
+    volatile boolean takeoverRequested = false;
+
+    // 长按判定的移动容差（客户端坐标单位，横纵之和）
+    private static final double LONG_PRESS_SLOP = 12.0;
+
+    // 手势状态，仅由该连接的解码线程访问
+    boolean touching = false;
+    // 带修饰键的手势滚动在此按格累加，凑满整格才发修饰键 + 滚轮
+    final StepAccumulator pinchSteps = new StepAccumulator();
+    final StepAccumulator rotateSteps = new StepAccumulator();
+    final StepAccumulator rollXSteps = new StepAccumulator();
+    final KineticScroller kinetic;
+    // 超过 gestureEndMs 没有手势消息时由时间轮置位，下一条手势消息据此结束上一个手势
+    private volatile boolean gestureEnded = false;
+    // 服务端长按：touchstart 后静止 longPressMs 即右键单击；travel 仅由解码线程访问
+    private TimerWheel.Timeout longPress;
+    private double pressTravel = 0;
+    private volatile boolean longPressFired = false;
+
+    // 实际注入后仍按住的输入，仅由注入线程访问
+    int heldButtons = 0;
+    int heldMods = 0;
+    final int[] heldKeys = new int[16];
+    int heldKeyCount = 0;
+    long lastActiveNanos = 0;
+
+    // 背压：不可丢弃的命令在环形队列满时进入溢出队列；积压时移动/滚动合并到旁路
+    private final EventRing overflow;
+    // claim 的返回值：溢出队列的序号按位取反（为负），溢出队列也满时为 REJECTED
+    private static final long REJECTED = Long.MIN_VALUE;
+    private final AtomicBoolean rejected = new AtomicBoolean();
+    // 溢出队列已满时的处理（服务端关闭连接），为空时只记日志
+    volatile Runnable onOverflow;
+    private final Object shedLock = new Object();
+    // flushShed 的中转槽位，持有 shedLock 时使用
+    private final InputCommand shedScratch = new InputCommand();
+    private volatile boolean shedPending = false;
+    private double shedMoveX, shedMoveY, shedScrollX, shedScrollY;
+    // 旁路期间只保留最新一条消息的延迟标记，更早的计为合并
+    private MessageStats shedMarkStats;
+    private int shedMarkType;
+    private long shedMarkRecv;
+    private double shedMarkTs;
+    private final int highWater;
+    private final int lowWater;
+    private final AtomicBoolean flowPaused = new AtomicBoolean();
+    // 发送 flow 控制消息的出口，为空时不发送
+    volatile Consumer<String> control;
+    // 批量入队期间不逐条唤醒注入线程，由 endBatch 统一唤醒。解码线程与 UDP 接收线程都可能写入：
+    // 任何一次被跳过的唤醒都发生在某个 beginBatch 之后，其 endBatch 必然再唤醒一次
+    private volatile boolean deferWake = false;
+    private final TimerWheel timers;
+    private final long longPressMs;
+    private final long repeatDelayMs;
+    private final long repeatPeriodNanos;
+    // 自动重复中的键：AWT 键码或键名（仅一个，与实体键盘一样新按下的键取代旧的）
+    private TimerWheel.Timeout repeat;
+    private int repeatCode;
+    private String repeatKey;
+    // 长时间无输入时释放仍按住的修饰键 / 所有键与按键
+    private final IdleTimeout modifierTimeout;
+    private final IdleTimeout holdTimeout;
+    private final IdleTimeout gestureTimeout;
+    // UDP 侧通道令牌，0 表示未分配
+    volatile long udpToken = 0;
+    // 客户端时钟估计；stampTs 为当前消息的客户端 ts，由解码线程写入随后入队的按键/键盘命令
+    final ClockSync clock = new ClockSync();
+    double stampTs = 0;
+
+    // 按客户端时间间隔推迟的按键/键盘命令，仅由注入线程访问（见 InjectionPipeline）
+    final InputCommand deferred = new InputCommand();
+    boolean holding = false;
+    long holdUntil = 0;
+    double lastInputTs = 0;
+    long lastInputNanos = 0;
+
+    Session(InjectionPipeline pipeline, int id, String label, MessageStats stats, int capacity,
+            TimerWheel timers) {
+        this.pipeline = pipeline;
+        this.id = id;
+        this.label = label;
+        this.stats = stats;
+        this.ring = new EventRing(capacity);
+        AppConfig config = pipeline.getConfig();
+        int cap = ring.capacity();
+        this.overflow = new EventRing(cap * Math.max(1, config.sessionOverflow));
+        this.highWater = Math.max(1, Math.min(cap - 1, (int)(cap * clamp01(config.flowHighWater, 0.75))));
+        this.lowWater = Math.min(highWater - 1, (int)(cap * clamp01(config.flowLowWater, 0.25)));
+        stats.setQueueDepthGauge(this::getQueueDepth);
+        this.timers = timers;
+        this.kinetic = timers == null ? null
+                : new KineticScroller(this, pipeline::getFrameNanos, pipeline.getConfig(), timers);
+        this.longPressMs = Math.max(0, config.longPressMs);
+        this.repeatDelayMs = Math.max(0, config.keyRepeatDelayMs);
+        this.repeatPeriodNanos = 1_000_000_000L / Math.max(1, config.keyRepeatHz);
+        this.modifierTimeout = idleTimeout(config.modifierTimeoutMs,
+                () -> enqueueRelease(InputCommand.RELEASE_MODS));
+        this.holdTimeout = idleTimeout(config.holdTimeoutMs, () -> {
+            stopRepeat();
+            enqueueRelease(InputCommand.RELEASE_ALL);
+        });
+        this.gestureTimeout = idleTimeout(config.gestureEndMs, () -> {
+            gestureEnded = true;
+            endGestureModifiers();
+        });
+    }
+
+    private IdleTimeout idleTimeout(long ms, Runnable action) {
+        return timers == null || ms <= 0 ? null : new IdleTimeout(ms * 1_000_000L, action);
+    }
+
+    /**
+     * 空闲超时：touch 只记下最近一次活动；到期检查时若期间有过活动则按剩余时间顺延，
+     * 否则执行动作。每条消息只是一次 volatile 写，空闲时不占用时间轮。
+     */
+    private final class IdleTimeout {
+        private final long timeoutNanos;
+        private final Runnable action;
+        private final AtomicBoolean armed = new AtomicBoolean();
+        private volatile long last;
+
+        IdleTimeout(long timeoutNanos, Runnable action) {
+            this.timeoutNanos = timeoutNanos;
+            this.action = action;
+        }
+
+        void touch(long now) {
+            last = now;
+            if (!armed.get() && armed.compareAndSet(false, true)) {
+                timers.schedule(this::check, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void check() {
+            long seen = last;
+            long idle = System.nanoTime() - seen;
+            if (!closed && idle < timeoutNanos) {
+                timers.schedule(this::check, timeoutNanos - idle, TimeUnit.NANOSECONDS);
+                return;
+            }
+            armed.set(false);
+            if (closed) return;
+            // 解除期间又有活动：重新计时
+            if (last != seen) {
+                touch(last);
+                return;
+            }
+            action.run();
+        }
+    }
+
+    private static double clamp01(double v, double def) {
+        return v > 0 && v < 1 ? v : def;
+    }
+
+    void resetGestureSteps() {
+        pinchSteps.reset();
+        rotateSteps.reset();
+        rollXSteps.reset();
+    }
+
+    void cancelKinetic() {
+        if (kinetic != null) kinetic.cancel();
+    }
+
+    /** 解码线程：收到该连接的一条消息，推迟超时释放。 */
+    void onActivity(long nanos) {
+        if (holdTimeout != null) holdTimeout.touch(nanos);
+        if (modifierTimeout != null) modifierTimeout.touch(nanos);
+    }
+
+    /** 解码线程：一条手势消息。上一个手势已超时结束（未收到 touchend）时先清掉它的状态。 */
+    void onGesture(long nanos) {
+        if (gestureEnded) {
+            gestureEnded = false;
+            touching = false;
+            resetGestureSteps();
+        }
+        if (gestureTimeout != null) gestureTimeout.touch(nanos);
+    }
+
+    /** delayMs 之后在时间轮线程上执行 action（会话已关闭则跳过）；没有时间轮时立即执行。 */
+    void later(long delayMs, Runnable action) {
+        if (timers == null || delayMs <= 0) {
+            action.run();
+            return;
+        }
+        timers.schedule(() -> {
+            if (!closed) action.run();
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** touchstart：开启服务端长按（未配置 longPressMs 时不做）。 */
+    synchronized void armLongPress() {
+        cancelLongPress();
+        longPressFired = false;
+        pressTravel = 0;
+        if (timers == null || longPressMs <= 0) return;
+        longPress = timers.schedule(() -> {
+            synchronized (this) {
+                if (closed || longPress == null || longPress.isCancelled()) return;
+                longPress = null;
+            }
+            longPressFired = true;
+            mouseButton(InputInjector.BUTTON_RIGHT, InputInjector.ACTION_CLICK, 0);
+        }, longPressMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** touchmove：移动超出容差即不再是长按。 */
+    void pressMoved(double dx, double dy) {
+        if (longPress == null) return;
+        pressTravel += Math.abs(dx) + Math.abs(dy);
+        if (pressTravel > LONG_PRESS_SLOP) cancelLongPress();
+    }
+
+    synchronized void cancelLongPress() {
+        if (longPress != null) {
+            longPress.cancel();
+            longPress = null;
+        }
+    }
+
+    /** 本次触摸是否已由服务端长按触发过右键（随后客户端的 tap/longpress 不再重复点击）。 */
+    boolean longPressFired() {
+        return longPressFired;
+    }
+
+    /** 请求独占控制权（exclusive / timeslice 策略下下一条输入即接管）。 */
+    void requestTakeover() {
+        takeoverRequested = true;
+    }
+
+    void close() {
+        cancelKinetic();
+        cancelLongPress();
+        stopRepeat();
+        closed = true;
+        pipeline.wake();
+    }
+
+    /** 开始把一批事件作为整体入队：期间的入队不唤醒注入线程。 */
+    void beginBatch() {
+        deferWake = true;
+    }
+
+    void endBatch() {
+        deferWake = false;
+        pipeline.wake();
+    }
+
+    int getQueueDepth() {
+        return ring.size() + overflow.size();
+    }
+
+    void moveRelative(double dx, double dy) {
+        if (dx == 0 && dy == 0) return;
+        if (shouldShed()) {
+            shed(InputCommand.MOVE, dx, dy);
+            return;
+        }
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.MOVE;
+        e.dx = dx;
+        e.dy = dy;
+        commit(seq, e);
+    }
+
+    void scroll(double dx, double dy) {
+        if (dx == 0 && dy == 0) return;
+        if (shouldShed()) {
+            shed(InputCommand.SCROLL, dx, dy);
+            return;
+        }
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.SCROLL;
+        e.dx = dx;
+        e.dy = dy;
+        commit(seq, e);
+    }
+
+    /** 带修饰键的手势滚动（pinch 缩放、rotate/roll 横向滚动）：不旁路累加，修饰键与滚动量一起入队。 */
+    void modifiedScroll(int mods, double dx, double dy) {
+        if (dx == 0 && dy == 0) return;
+        flushShed();
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.GESTURE_SCROLL;
+        e.code = mods;
+        e.dx = dx;
+        e.dy = dy;
+        commit(seq, e);
+    }
+
+    /** 手势结束（touchend 或 gestureEndMs 内无手势消息）：抬起手势临时按住的修饰键。 */
+    void endGestureModifiers() {
+        enqueueRelease(InputCommand.RELEASE_GESTURE);
+    }
+
+    void mouseButton(String button, String action) {
+        mouseButton(InputInjector.buttonOf(button), InputInjector.actionOf(action));
+    }
+
+    void mouseButton(int button, int action) {
+        mouseButton(button, action, stampTs);
+    }
+
+    /** clientTs 为该命令的客户端时刻；定时任务等非解码线程入队时传 0。 */
+    void mouseButton(int button, int action, double clientTs) {
+        if (action == InputInjector.ACTION_NONE) return;
+        flushShed();
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.BUTTON;
+        e.code = button;
+        e.action = action;
+        e.clientTs = clientTs;
+        commit(seq, e);
+    }
+
+    void setModifiers(boolean ctrl, boolean alt, boolean shift, boolean meta, boolean press) {
+        int mask = (ctrl ? InputCommand.MOD_CTRL : 0) | (alt ? InputCommand.MOD_ALT : 0)
+                | (shift ? InputCommand.MOD_SHIFT : 0) | (meta ? InputCommand.MOD_META : 0);
+        if (mask == 0) return;
+        flushShed();
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.MODIFIERS;
+        e.code = mask;
+        e.down = press;
+        e.clientTs = stampTs;
+        commit(seq, e);
+    }
+
+    void keyEvent(String key, boolean isDown) {
+        enqueueKey(0, key, isDown, stampTs);
+        if (repeatDelayMs > 0) {
+            int code = KeyMap.toKeyCode(key);
+            boolean typable = code == KeyEvent.VK_UNDEFINED && key != null && key.length() == 1;
+            keyRepeat(typable ? 0 : code, typable ? key : null, isDown);
+        }
+    }
+
+    void keyCode(int code, boolean isDown) {
+        enqueueKey(code, null, isDown, stampTs);
+        if (repeatDelayMs > 0) keyRepeat(code, null, isDown);
+    }
+
+    private void enqueueKey(int code, String key, boolean isDown, double clientTs) {
+        flushShed();
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.KEY;
+        e.code = code;
+        e.text = key;
+        e.down = isDown;
+        e.clientTs = clientTs;
+        commit(seq, e);
+    }
+
+    /**
+     * 服务端按键自动重复：按下可重复的键 keyRepeatDelayMs 后按 keyRepeatHz 重复发送按下，
+     * 直到它抬起、按下另一个键、超时释放或会话关闭。key 非空时按键名重复（由注入线程解析键码）。
+     */
+    private synchronized void keyRepeat(int code, String key, boolean down) {
+        boolean same = key != null ? key.equals(repeatKey) : repeatKey == null && code == repeatCode;
+        if (!down) {
+            if (same) stopRepeat();
+            return;
+        }
+        if (key == null && !repeats(code)) return;
+        stopRepeat();
+        if (timers == null) return;
+        repeatCode = code;
+        repeatKey = key;
+        repeat = timers.scheduleAtFixedRate(() -> {
+            if (!closed) enqueueKey(code, key, true, 0);
+        }, repeatDelayMs * 1_000_000L, repeatPeriodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void stopRepeat() {
+        if (repeat != null) {
+            repeat.cancel();
+            repeat = null;
+        }
+        repeatCode = 0;
+        repeatKey = null;
+    }
+
+    private static boolean repeats(int code) {
+        if (KeyMap.isModifier(code)) return false;
+        switch (code) {
+            case KeyEvent.VK_UNDEFINED:
+            case KeyEvent.VK_CAPS_LOCK:
+            case KeyEvent.VK_NUM_LOCK:
+            case KeyEvent.VK_SCROLL_LOCK:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /** 入队释放命令（由注入线程按该会话实际按住的输入执行）。 */
+    private void enqueueRelease(int what) {
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.RELEASE;
+        e.code = what;
+        commit(seq, e);
+    }
+
+    void typeText(String text) {
+        if (text == null || text.isEmpty()) return;
+        flushShed();
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.TEXT;
+        e.text = text;
+        commit(seq, e);
+    }
+
+    /**
+     * 标记一条消息的注入命令已全部入队。注入线程执行到此处（若前面有尚未冲刷的移动/滚动，
+     * 则等到它们实际注入后）记录该消息从收到到注入完成的延迟。sentMs 见 {@link MessageStats#onCompleted}。
+     */
+    void mark(MessageStats stats, int type, long recvNanos, double sentMs) {
+        if (shedPending && shouldShed()) {
+            synchronized (shedLock) {
+                if (shedMarkStats != null) shedMarkStats.onCoalesced();
+                shedMarkStats = stats;
+                shedMarkType = type;
+                shedMarkRecv = recvNanos;
+                shedMarkTs = sentMs;
+            }
+            return;
+        }
+        long seq = claim();
+        InputCommand e = slot(seq);
+        e.kind = InputCommand.MARK;
+        e.stats = stats;
+        e.code = type;
+        e.recvNanos = recvNanos;
+        e.clientTs = sentMs;
+        publish(seq);
+        if (!deferWake) pipeline.wake();
+    }
+
+    /**
+     * 申请序号：环形队列已满或溢出队列中还有命令时改入溢出队列（以保持顺序），返回按位取反的序号；
+     * 溢出队列也满时返回 {@link #REJECTED} 并关闭连接。
+     */
+    private long claim() {
+        if (overflow.size() == 0) {
+            long seq = ring.tryClaim();
+            if (seq >= 0) return seq;
+        }
+        long seq = overflow.tryClaim();
+        if (seq >= 0) return ~seq;
+        reject();
+        return REJECTED;
+    }
+
+    /** 序号对应的槽位；被拒绝时返回一个临时对象，内容随即丢弃（连接即将关闭）。 */
+    private InputCommand slot(long seq) {
+        if (seq >= 0) return ring.slot(seq);
+        if (seq == REJECTED) return new InputCommand();
+        return overflow.slot(~seq);
+    }
+
+    private void publish(long seq) {
+        if (seq >= 0) ring.publish(seq);
+        else if (seq != REJECTED) overflow.publish(~seq);
+    }
+
+    private void reject() {
+        if (!rejected.compareAndSet(false, true)) return;
+        stats.onDropped();
+        System.out.println("会话: " + label + " 溢出队列已满（" + overflow.capacity() + "），客户端未遵守 flow pause，关闭连接");
+        Runnable r = onOverflow;
+        if (r != null) r.run();
+    }
+
+    private void commit(long seq, InputCommand e) {
+        publish(seq);
+        if (seq == REJECTED) return;
+        pipeline.onEnqueued(!deferWake);
+        if (!flowPaused.get() && getQueueDepth() >= highWater && flowPaused.compareAndSet(false, true)) {
+            stats.onFlowPause();
+            sendFlow("pause", 0);
+        }
+    }
+
+    /**
+     * 注入线程：环形队列取空后再取溢出队列。
+     * 环形队列中已申请、尚未发布的槽位也要等它取走，否则同一生产者排在溢出队列的后续命令会先注入。
+     */
+    boolean pollOverflow(InputCommand out) {
+        return ring.size() == 0 && overflow.poll(out);
+    }
+
+    private boolean shouldShed() {
+        return ring.size() >= highWater || overflow.size() > 0;
+    }
+
+    /** 积压时移动/滚动不再入队，累加到旁路，由注入线程在队列取空后一次注入。 */
+    private void shed(int kind, double dx, double dy) {
+        stats.onShed();
+        accumulate(kind, dx, dy);
+    }
+
+    /** 滞后超过 TTL 的移动/滚动：不再逐条重演，并入旁路，与其他滞后的一起作为一步注入。 */
+    void mergeLate(int kind, double dx, double dy) {
+        if (dx == 0 && dy == 0) return;
+        accumulate(kind, dx, dy);
+    }
+
+    private void accumulate(int kind, double dx, double dy) {
+        synchronized (shedLock) {
+            if (kind == InputCommand.MOVE) {
+                shedMoveX += dx;
+                shedMoveY += dy;
+            } else {
+                shedScrollX += dx;
+                shedScrollY += dy;
+            }
+            shedPending = true;
+        }
+        if (!deferWake) pipeline.wake();
+    }
+
+    /** 入队不可合并的命令前，先把旁路累加的移动/滚动（及其延迟标记）按原顺序放回队列。 */
+    private void flushShed() {
+        if (!shedPending) return;
+        while (true) {
+            long seq;
+            InputCommand e;
+            synchronized (shedLock) {
+                if (!takeShed(shedScratch)) return;
+                seq = claim();
+                e = slot(seq);
+                e.copyFrom(shedScratch);
+                shedScratch.clear();
+            }
+            commit(seq, e);
+        }
+    }
+
+    /**
+     * 取走旁路中的一条命令写入 out：依次为累加的移动、滚动、最新的延迟标记；没有时返回 false。
+     * 注入线程在该会话队列取空后调用，入队线程在 {@link #flushShed()} 中调用。
+     */
+    boolean takeShed(InputCommand out) {
+        if (!shedPending) return false;
+        synchronized (shedLock) {
+            if (shedMoveX != 0 || shedMoveY != 0) {
+                out.kind = InputCommand.MOVE;
+                out.dx = shedMoveX;
+                out.dy = shedMoveY;
+                shedMoveX = shedMoveY = 0;
+                return true;
+            }
+            if (shedScrollX != 0 || shedScrollY != 0) {
+                out.kind = InputCommand.SCROLL;
+                out.dx = shedScrollX;
+                out.dy = shedScrollY;
+                shedScrollX = shedScrollY = 0;
+                return true;
+            }
+            if (shedMarkStats != null) {
+                out.kind = InputCommand.MARK;
+                out.stats = shedMarkStats;
+                out.code = shedMarkType;
+                out.recvNanos = shedMarkRecv;
+                out.clientTs = shedMarkTs;
+                shedMarkStats = null;
+                return true;
+            }
+            shedPending = false;
+            return false;
+        }
+    }
+
+    /** 注入线程：积压回落到低水位以下时通知客户端恢复发送。 */
+    void checkResume() {
+        if (flowPaused.get() && getQueueDepth() <= lowWater && flowPaused.compareAndSet(true, false)) {
+            sendFlow("resume", pipeline.getInjectRate());
+        }
+    }
+
+    private void sendFlow(String state, int rate) {
+        Consumer<String> c = control;
+        if (c == null) return;
+        c.accept("{\"type\":\"flow\",\"state\":\"" + state + "\",\"rate\":" + rate
+                + ",\"queue\":" + getQueueDepth() + "}");
+    }
+
+    /** 注入线程：记录已注入的按下/抬起，供断开或失去控制权时释放。 */
+    void trackButton(int button, int action) {
+        int bit = 1 << button;
+        if (action == InputInjector.ACTION_DOWN) heldButtons |= bit;
+        else if (action == InputInjector.ACTION_UP) heldButtons &= ~bit;
+    }
+
+    void trackModifiers(int mask, boolean down) {
+        if (down) heldMods |= mask;
+        else heldMods &= ~mask;
+    }
+
+    void trackKey(int code, boolean down) {
+        for (int i = 0; i < heldKeyCount; i++) {
+            if (heldKeys[i] == code) {
+                if (!down) heldKeys[i] = heldKeys[--heldKeyCount];
+                return;
+            }
+        }
+        if (down && heldKeyCount < heldKeys.length) heldKeys[heldKeyCount++] = code;
+    }
+
+    /** 注入线程：是否还有待处理的命令（环形队列、溢出队列或旁路）。 */
+    boolean hasWork() {
+        return !ring.isEmpty() || overflow.size() > 0 || shedPending;
+    }
+
+    boolean holdsModifiers() {
+        if (heldMods != 0) return true;
+        for (int i = 0; i < heldKeyCount; i++) {
+            if (KeyMap.isModifier(heldKeys[i])) return true;
+        }
+        return false;
+    }
+
+    boolean holdsInput() {
+        return heldButtons != 0 || heldMods != 0 || heldKeyCount != 0;
+    }
+}
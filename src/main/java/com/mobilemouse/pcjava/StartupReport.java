@@ -0,0 +1,85 @@
+package com.mobilemouse.pcjava;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * 启动耗时报告：记录 main 之后各初始化步骤（可在不同线程并行）的起止时刻，
+ * 绑定端口与注入后端都就绪后输出一行汇总，首个连接到来时再输出一行。
+ * 时刻均相对 main 开始；JVM 自身的启动耗时在输出时才读取，不拖慢启动路径。
+ */
+final class StartupReport {
+    private final long t0 = System.nanoTime();
+    private final long mainEpochMs = System.currentTimeMillis();
+    private final List<String> phases = new ArrayList<>();
+    private long listenAt = -1;
+    private long readyAt = -1;
+    private boolean reported = false;
+    private boolean firstClient = false;
+
+    /** 在当前线程执行一个初始化步骤并记下起止时刻。 */
+    <T> T time(String phase, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            long end = System.nanoTime();
+            synchronized (this) {
+                phases.add(phase + " " + ms(end - start) + " ms (+" + ms(start - t0) + ")");
+            }
+        }
+    }
+
+    /** 端口已绑定，可以接受连接。 */
+    void onListening() {
+        synchronized (this) {
+            listenAt = System.nanoTime();
+        }
+        maybeReport();
+    }
+
+    /** 注入后端已就绪，可以注入输入。 */
+    void onInjectorReady() {
+        synchronized (this) {
+            readyAt = System.nanoTime();
+        }
+        maybeReport();
+    }
+
+    /** 首个连接完成握手；injectorReady 为此时注入后端是否已就绪（未就绪时其输入先排队）。 */
+    void onFirstClient(boolean injectorReady) {
+        synchronized (this) {
+            if (firstClient) return;
+            firstClient = true;
+        }
+        System.out.println("启动: 首个连接 +" + ms(System.nanoTime() - t0) + " ms"
+                + (injectorReady ? "" : "（注入后端尚未就绪，输入排队等待）"));
+    }
+
+    private void maybeReport() {
+        String line;
+        synchronized (this) {
+            if (reported || listenAt < 0 || readyAt < 0) return;
+            reported = true;
+            line = "启动: " + String.join(", ", phases)
+                    + "; 监听 +" + ms(listenAt - t0) + " ms, 可注入 +" + ms(readyAt - t0) + " ms";
+        }
+        System.out.println(line + jvmStartup());
+    }
+
+    private String jvmStartup() {
+        try {
+            long jvm = mainEpochMs - ManagementFactory.getRuntimeMXBean().getStartTime();
+            return jvm >= 0 ? "（JVM 启动到 main " + jvm + " ms）" : "";
+        } catch (Throwable e) {
+            return "";
+        }
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,156 @@
+package com.mobilemouse.pcjava;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.ObjectName;
+
+/**
+ * 统计汇总：全局 + 每个连接的 {@link MessageStats}，并可选通过本机 HTTP（GET /stats）
+ * 或 JMX（com.mobilemouse:type=Stats）对外提供。
+ */
+final class StatsService {
+    /** JMX 视图。 */
+    public interface StatsMXBean {
+        String getJson();
+
+        long getInjectP50Micros();
+
+        long getInjectP99Micros();
+
+        int getClientCount();
+
+        int getQueueDepth();
+
+        long getShedCount();
+    }
+
+    final MessageStats global = new MessageStats("global", null);
+    private final Set<MessageStats> clients = ConcurrentHashMap.newKeySet();
+    private HttpServer http;
+    private boolean stopped = false;
+
+    MessageStats openClient(String label) {
+        MessageStats s = new MessageStats(label, global);
+        clients.add(s);
+        return s;
+    }
+
+    void closeClient(MessageStats s) {
+        if (s != null) clients.remove(s);
+    }
+
+    /** stats 请求的应答：全局、当前连接与进程信息。 */
+    JsonObject snapshot(MessageStats client, boolean allClients) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "stats");
+        o.addProperty("clients", clients.size());
+        o.add("global", global.toJson());
+        if (client != null) o.add("client", client.toJson());
+        if (allClients) {
+            JsonArray arr = new JsonArray();
+            for (MessageStats s : clients) arr.add(s.toJson());
+            o.add("perClient", arr);
+        }
+        o.add("process", processJson());
+        return o;
+    }
+
+    static JsonObject processJson() {
+        JsonObject p = new JsonObject();
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean sun = (com.sun.management.OperatingSystemMXBean)os;
+            p.addProperty("cpuLoad", sun.getProcessCpuLoad());
+            p.addProperty("cpuTimeMs", sun.getProcessCpuTime() / 1_000_000L);
+        }
+        long gcCount = 0, gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTime += Math.max(0, gc.getCollectionTime());
+        }
+        p.addProperty("gcCount", gcCount);
+        p.addProperty("gcTimeMs", gcTime);
+        Runtime rt = Runtime.getRuntime();
+        p.addProperty("heapUsedBytes", rt.totalMemory() - rt.freeMemory());
+        p.addProperty("threads", ManagementFactory.getThreadMXBean().getThreadCount());
+        return p;
+    }
+
+    /** 按配置启动 HTTP / JMX 出口；在后台线程调用，已 stop 时不再启动。 */
+    synchronized void start(AppConfig config) {
+        if (stopped) return;
+        if (config.statsHttpPort > 0) {
+            try {
+                http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.statsHttpPort), 0);
+                http.createContext("/stats", ex -> {
+                    byte[] body = snapshot(null, true).toString().getBytes(StandardCharsets.UTF_8);
+                    ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                    ex.sendResponseHeaders(200, body.length);
+                    try (OutputStream os = ex.getResponseBody()) {
+                        os.write(body);
+                    }
+                });
+                http.start();
+                System.out.println("统计: http://127.0.0.1:" + config.statsHttpPort + "/stats");
+            } catch (Exception e) {
+                System.out.println("统计 HTTP 启动失败: " + e.getMessage());
+            }
+        }
+        if (config.statsJmx) {
+            try {
+                StatsMXBean bean = new StatsMXBean() {
+                    @Override
+                    public String getJson() {
+                        return snapshot(null, true).toString();
+                    }
+
+                    @Override
+                    public long getInjectP50Micros() {
+                        return global.injectPercentileNanos(MessageType.TOUCHMOVE, 0.50) / 1000;
+                    }
+
+                    @Override
+                    public long getInjectP99Micros() {
+                        return global.injectPercentileNanos(MessageType.TOUCHMOVE, 0.99) / 1000;
+                    }
+
+                    @Override
+                    public int getClientCount() {
+                        return clients.size();
+                    }
+
+                    @Override
+                    public int getQueueDepth() {
+                        return global.queueDepth();
+                    }
+
+                    @Override
+                    public long getShedCount() {
+                        return global.shedCount();
+                    }
+                };
+                ManagementFactory.getPlatformMBeanServer().registerMBean(bean, new ObjectName("com.mobilemouse:type=Stats"));
+            } catch (Exception e) {
+                System.out.println("统计 JMX 注册失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /** 停止 HTTP 出口：其分发线程不是守护线程，不停止会让进程无法退出。 */
+    synchronized void stop() {
+        stopped = true;
+        if (http != null) http.stop(0);
+        http = null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mobilemouse.pcjava;
+
+/**
+ * 单轴小数累加器：把连续的小数增量累积起来，只在凑满整数（像素 / 滚轮格）时输出，
+ * 余数保留到下一次。方向反转时丢弃余数，避免回拉时的“空程”。
+ */
+final class StepAccumulator {
+    private double remainder;
+
+    /** 加入增量，返回本次可输出的整数步数（向零截断）。 */
+    int add(double delta) {
+        if (delta == 0) return 0;
+        if ((delta > 0 && remainder < 0) || (delta < 0 && remainder > 0)) remainder = 0;
+        double total = remainder + delta;
+        int steps = (int)total;
+        remainder = total - steps;
+        return steps;
+    }
+
+    double remainder() {
+        return remainder;
+    }
+
+    void reset() {
+        remainder = 0;
+    }
+}
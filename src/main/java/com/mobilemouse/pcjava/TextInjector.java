@@ -0,0 +1,58 @@
+package com.mobilemouse.pcjava;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文本注入线程：长文本的按键/粘贴在这里执行，注入线程不会被一条 text_input 阻塞，
+ * 之后的鼠标移动、点击照常注入。文本执行期间到达的键盘事件也排到这里，保证“先文本后按键”的顺序。
+ */
+final class TextInjector {
+    private final InputInjector injector;
+    private final ExecutorService executor;
+    // 已提交未完成的任务数（文本与排在其后的键盘事件）
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    TextInjector(InputInjector injector) {
+        this.injector = injector;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "text-injector");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void submit(String text) {
+        after(() -> injector.typeText(text));
+    }
+
+    /** 是否仍有文本在执行；为 true 时键盘事件应通过 {@link #after} 排队。 */
+    boolean isBusy() {
+        return inFlight.get() > 0;
+    }
+
+    void after(Runnable task) {
+        inFlight.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                System.out.println("文本注入错误: " + t.getMessage());
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /** 中断正在输入的文本并等它停下（最多 timeoutMs），之后才能安全地整体释放按键。 */
+    void shutdown(long timeoutMs) {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.mobilemouse.pcjava;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮：一个线程承担所有与时间有关的输入动作（惯性、双击间隔、长按、按键自动重复、
+ * 超时释放、手势结束），处理器只登记定时任务、从不阻塞解码线程。
+ * 到期时间按 1 ms 的 tick 散列到 512 个槽位，超过一圈的任务记下到期 tick，转到该槽位时才执行。
+ * 登记与取消可在任意线程进行（登记先进入无锁队列，由时间轮线程放入槽位）；任务在时间轮线程上执行，
+ * 应当很短，通常只是向会话入队一条命令。线程睡到最近一个非空槽位，登记更早的任务时被唤醒，
+ * 没有任务时一直挂起。
+ */
+final class TimerWheel {
+    private static final int WHEEL_SIZE = 512;
+    private static final int MASK = WHEEL_SIZE - 1;
+    private static final long TICK_NANOS = 1_000_000L;
+
+    /** 一个已登记的任务；cancel 可在任意线程调用，已开始执行的一次不受影响。 */
+    static final class Timeout {
+        private final Runnable task;
+        private final long periodNanos;
+        // 相对时间轮启动的纳秒与 tick，仅由时间轮线程在登记后访问
+        private long deadline;
+        private long expireTick;
+        private Timeout next;
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadline, long periodNanos) {
+            this.task = task;
+            this.deadline = deadline;
+            this.periodNanos = periodNanos;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long start = System.nanoTime();
+    private final Timeout[] slots = new Timeout[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    // 时间轮线程计划醒来的时刻（相对 start），登记更早的任务时需要唤醒它
+    private volatile long wakeAt = 0;
+    private volatile boolean running = true;
+
+    // 以下仅由时间轮线程访问
+    private long tick = 0;
+    private int size = 0;
+
+    TimerWheel(String name) {
+        thread = new Thread(this::runLoop, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** delay 之后执行一次 task。 */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Timeout(task, now() + Math.max(0, unit.toNanos(delay)), 0));
+    }
+
+    /** initialDelay 之后按固定频率执行；处理不及的周期直接跳过，不补发。 */
+    Timeout scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        long p = Math.max(TICK_NANOS, unit.toNanos(period));
+        return add(new Timeout(task, now() + Math.max(0, unit.toNanos(initialDelay)), p));
+    }
+
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private long now() {
+        return System.nanoTime() - start;
+    }
+
+    private Timeout add(Timeout t) {
+        incoming.add(t);
+        if (t.deadline < wakeAt) LockSupport.unpark(thread);
+        return t;
+    }
+
+    private void runLoop() {
+        while (running) {
+            long target = now() / TICK_NANOS;
+            // 空闲挂起之后不必逐个走过空槽位
+            if (size == 0) tick = Math.max(tick, target);
+            while (tick <= target) {
+                transfer(tick);
+                expire();
+                tick++;
+            }
+            transfer(tick);
+            long next = nextDeadline();
+            wakeAt = next;
+            // 先公布 wakeAt 再检查队列：登记线程要么看到新的 wakeAt 而唤醒，要么任务已在这里被看到
+            if (!incoming.isEmpty()) continue;
+            if (next == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                long sleep = next - now();
+                if (sleep > 0) LockSupport.parkNanos(this, sleep);
+            }
+        }
+    }
+
+    private void transfer(long minTick) {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            if (!t.cancelled) insert(t, minTick);
+        }
+    }
+
+    private void insert(Timeout t, long minTick) {
+        t.expireTick = Math.max(minTick, (t.deadline + TICK_NANOS - 1) / TICK_NANOS);
+        int i = (int)(t.expireTick & MASK);
+        t.next = slots[i];
+        slots[i] = t;
+        size++;
+    }
+
+    /** 执行当前 tick 槽位中到期的任务，顺带移除已取消的；周期任务在本轮结束后重新放入。 */
+    private void expire() {
+        int i = (int)(tick & MASK);
+        Timeout prev = null;
+        Timeout again = null;
+        Timeout t = slots[i];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.cancelled || t.expireTick <= tick) {
+                if (prev == null) slots[i] = next;
+                else prev.next = next;
+                size--;
+                if (!t.cancelled) {
+                    run(t);
+                    if (t.periodNanos > 0 && !t.cancelled) {
+                        t.next = again;
+                        again = t;
+                    }
+                }
+            } else {
+                prev = t;
+            }
+            t = next;
+        }
+        if (again != null) {
+            long now = now();
+            while (again != null) {
+                Timeout next = again.next;
+                do {
+                    again.deadline += again.periodNanos;
+                } while (again.deadline <= now);
+                insert(again, tick + 1);
+                again = next;
+            }
+        }
+    }
+
+    private static void run(Timeout t) {
+        try {
+            t.task.run();
+        } catch (Throwable e) {
+            System.out.println("定时任务错误: " + e);
+        }
+    }
+
+    /** 最近一个非空槽位的时刻（相对 start）；没有任务时为 Long.MAX_VALUE。 */
+    private long nextDeadline() {
+        if (size == 0) return Long.MAX_VALUE;
+        for (int k = 0; k < WHEEL_SIZE; k++) {
+            if (slots[(int)((tick + k) & MASK)] != null) return (tick + k) * TICK_NANOS;
+        }
+        return (tick + WHEEL_SIZE) * TICK_NANOS;
+    }
+}
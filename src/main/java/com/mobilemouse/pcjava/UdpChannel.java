@@ -0,0 +1,169 @@
+package com.mobilemouse.pcjava;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * 可选的 UDP 侧通道：只承载可丢失、可合并的移动与滚动，避免一个丢包的重传拖住后续所有移动。
+ * 客户端从 WebSocket 的 hello 中取得 udpPort 与本连接的 udpToken，数据报格式：
+ * <pre>
+ * datagram := u8 version, u64 token, u32 seq, record*
+ * </pre>
+ * record 与 {@link BinaryProtocol} 相同，但只接受 MOVE_* 与 SCROLL_*；按键、键盘、文本仍走 WebSocket。
+ * seq 按会话递增，不比上一条新的数据报（乱序、重复）直接丢弃；来源地址须与 WebSocket 连接同一主机。
+ * 令牌低 16 位是会话在槽位表中的下标、其余 48 位随机：接收线程按下标直接取槽位再比对整个令牌，不装箱、不加锁。
+ */
+final class UdpChannel {
+    // version + token + seq
+    private static final int HEADER = 1 + 8 + 4;
+    private static final int MAX_DATAGRAM = 1500;
+    private static final int SLOT_BITS = 16;
+    private static final int MAX_SLOTS = 1 << SLOT_BITS;
+
+    /** 一个已协商的会话；lastSeq 仅由接收线程访问。 */
+    private static final class Peer {
+        final long token;
+        final Session session;
+        final InetAddress address;
+        boolean seen = false;
+        int lastSeq;
+
+        Peer(long token, Session session, InetAddress address) {
+            this.token = token;
+            this.session = session;
+            this.address = address;
+        }
+    }
+
+    private final int port;
+    private final BiConsumer<Session, InboundMessage> sink;
+    /** 槽位表；满时加倍复制后整体替换，增删在锁内进行，接收线程只读。 */
+    private volatile AtomicReferenceArray<Peer> peers = new AtomicReferenceArray<>(16);
+    private final SecureRandom random = new SecureRandom();
+    private DatagramChannel channel;
+    private Thread thread;
+
+    UdpChannel(int port, BiConsumer<Session, InboundMessage> sink) {
+        this.port = port;
+        this.sink = sink;
+    }
+
+    void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(port));
+        thread = new Thread(this::runLoop, "udp-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    /**
+     * 为会话分配令牌；peer 为 WebSocket 连接的对端地址，只接受来自该主机的数据报。
+     * 同时在线的会话超过 {@value #MAX_SLOTS} 个时返回 0，该连接不使用 UDP。
+     */
+    synchronized long register(Session session, InetAddress peer) {
+        AtomicReferenceArray<Peer> t = peers;
+        int slot = 0;
+        while (slot < t.length() && t.get(slot) != null) slot++;
+        if (slot == t.length()) {
+            if (slot == MAX_SLOTS) return 0;
+            AtomicReferenceArray<Peer> grown = new AtomicReferenceArray<>(slot * 2);
+            for (int i = 0; i < slot; i++) grown.set(i, t.get(i));
+            peers = t = grown;
+        }
+        long token;
+        do {
+            token = (random.nextLong() & -MAX_SLOTS) | slot;
+        } while (token == 0);
+        t.set(slot, new Peer(token, session, peer));
+        return token;
+    }
+
+    synchronized void unregister(long token) {
+        AtomicReferenceArray<Peer> t = peers;
+        int slot = (int)token & (MAX_SLOTS - 1);
+        if (slot >= t.length()) return;
+        Peer p = t.get(slot);
+        if (p != null && p.token == token) t.set(slot, null);
+    }
+
+    /** 接收线程：按令牌中的下标取槽位；令牌不符（伪造、已注销后复用）时返回 null。 */
+    private Peer lookup(long token) {
+        AtomicReferenceArray<Peer> t = peers;
+        int slot = (int)token & (MAX_SLOTS - 1);
+        if (slot >= t.length()) return null;
+        Peer p = t.get(slot);
+        return p != null && p.token == token ? p : null;
+    }
+
+    void close() {
+        DatagramChannel c = channel;
+        if (c == null) return;
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void runLoop() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(MAX_DATAGRAM);
+        InboundMessage msg = new InboundMessage();
+        while (channel.isOpen()) {
+            try {
+                buf.clear();
+                SocketAddress from = channel.receive(buf);
+                if (from == null) continue;
+                buf.flip();
+                handle(buf, from, msg);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (Exception e) {
+                System.out.println("UDP 接收错误: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(ByteBuffer buf, SocketAddress from, InboundMessage msg) {
+        long recv = System.nanoTime();
+        if (buf.remaining() < HEADER || !BinaryProtocol.begin(buf)) return;
+        Peer p = lookup(buf.getLong());
+        // 未知令牌或来源主机不符：不回应，避免成为探测与反射的目标
+        if (p == null || !(from instanceof InetSocketAddress)
+                || !p.address.equals(((InetSocketAddress)from).getAddress())) return;
+        Session s = p.session;
+        int seq = buf.getInt();
+        if (p.seen && seq - p.lastSeq <= 0) {
+            s.stats.onStale();
+            return;
+        }
+        p.seen = true;
+        p.lastSeq = seq;
+        s.beginBatch();
+        try {
+            int r;
+            while ((r = BinaryProtocol.next(buf, msg)) == BinaryProtocol.RESULT_RECORD) {
+                if (msg.type == MessageType.MOUSE_MOVE || msg.type == MessageType.SCROLL) {
+                    sink.accept(s, msg);
+                    s.stats.onReceived(msg.type);
+                    s.mark(s.stats, msg.type, recv, msg.hasTs ? s.clock.toLocalMs(msg.ts) : 0.0);
+                } else {
+                    s.stats.onUnsupported();
+                }
+            }
+            if (r == BinaryProtocol.RESULT_ERROR) s.stats.onError();
+        } finally {
+            s.endBatch();
+        }
+    }
+}
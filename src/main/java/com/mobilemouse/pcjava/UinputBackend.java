@@ -0,0 +1,335 @@
+package com.mobilemouse.pcjava;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+
+import java.awt.event.KeyEvent;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Linux uinput 后端：打开 /dev/uinput 创建一个虚拟鼠标+键盘，直接写入 evdev 事件，
+ * 绕过 AWT 事件队列，并支持真正的水平滚轮（REL_HWHEEL）。
+ * 需要对 /dev/uinput 有写权限（通常加入 input 组或配置 udev 规则）。
+ */
+final class UinputBackend implements InputBackend {
+    interface LibC extends Library {
+        int open(String path, int flags);
+
+        int ioctl(int fd, NativeLong request, int arg);
+
+        int ioctl(int fd, NativeLong request);
+
+        NativeLong write(int fd, byte[] buf, NativeLong count);
+
+        int close(int fd);
+    }
+
+    private static final int O_WRONLY = 1;
+    private static final int O_NONBLOCK = 04000;
+
+    private static final long UI_SET_EVBIT = 0x40045564L;
+    private static final long UI_SET_KEYBIT = 0x40045565L;
+    private static final long UI_SET_RELBIT = 0x40045566L;
+    private static final long UI_DEV_CREATE = 0x5501L;
+    private static final long UI_DEV_DESTROY = 0x5502L;
+
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int EV_REL = 0x02;
+    private static final int SYN_REPORT = 0;
+    private static final int REL_X = 0x00;
+    private static final int REL_Y = 0x01;
+    private static final int REL_HWHEEL = 0x06;
+    private static final int REL_WHEEL = 0x08;
+    private static final int BTN_LEFT = 0x110;
+    private static final int BTN_RIGHT = 0x111;
+    private static final int BTN_MIDDLE = 0x112;
+    private static final int BUS_VIRTUAL = 0x06;
+    private static final int KEY_MAX_REGISTERED = 248;
+
+    // struct input_event { struct timeval time; __u16 type; __u16 code; __s32 value; }
+    private static final int EVENT_SIZE = Native.LONG_SIZE * 2 + 8;
+    // struct uinput_user_dev { char name[80]; struct input_id id; __u32 ff_effects_max; __s32 abs*[4][64]; }
+    private static final int USER_DEV_SIZE = 80 + 8 + 4 + 4 * 64 * 4;
+
+    private final LibC libc;
+    private final int fd;
+    // 一次 write 最多携带 3 个事件（两个轴 + SYN）；注入线程与文本线程都会写，按实例加锁
+    private final byte[] buf = new byte[EVENT_SIZE * 3];
+    private final ByteBuffer out = ByteBuffer.wrap(buf).order(ByteOrder.nativeOrder());
+
+    UinputBackend(String devicePath) {
+        try {
+            libc = Native.load("c", LibC.class);
+        } catch (Throwable t) {
+            throw new RuntimeException("无法加载 libc（uinput 后端仅支持 Linux）: " + t.getMessage(), t);
+        }
+        String path = devicePath == null || devicePath.isEmpty() ? "/dev/uinput" : devicePath;
+        fd = libc.open(path, O_WRONLY | O_NONBLOCK);
+        if (fd < 0) {
+            throw new RuntimeException("无法打开 " + path + "，请检查权限: errno=" + Native.getLastError());
+        }
+        try {
+            setup();
+        } catch (RuntimeException e) {
+            libc.close(fd);
+            throw e;
+        }
+    }
+
+    private void setup() {
+        ioctl(UI_SET_EVBIT, EV_SYN);
+        ioctl(UI_SET_EVBIT, EV_KEY);
+        ioctl(UI_SET_EVBIT, EV_REL);
+        ioctl(UI_SET_RELBIT, REL_X);
+        ioctl(UI_SET_RELBIT, REL_Y);
+        ioctl(UI_SET_RELBIT, REL_WHEEL);
+        ioctl(UI_SET_RELBIT, REL_HWHEEL);
+        ioctl(UI_SET_KEYBIT, BTN_LEFT);
+        ioctl(UI_SET_KEYBIT, BTN_RIGHT);
+        ioctl(UI_SET_KEYBIT, BTN_MIDDLE);
+        for (int k = 1; k <= KEY_MAX_REGISTERED; k++) ioctl(UI_SET_KEYBIT, k);
+
+        ByteBuffer dev = ByteBuffer.allocate(USER_DEV_SIZE).order(ByteOrder.nativeOrder());
+        byte[] name = "MobileMouse Virtual Input".getBytes(StandardCharsets.US_ASCII);
+        dev.put(name, 0, Math.min(name.length, 79));
+        dev.position(80);
+        dev.putShort((short)BUS_VIRTUAL);
+        dev.putShort((short)0x1209);
+        dev.putShort((short)0x4d4d);
+        dev.putShort((short)1);
+        byte[] raw = dev.array();
+        if (libc.write(fd, raw, new NativeLong(raw.length)).intValue() != raw.length) {
+            throw new RuntimeException("写入 uinput 设备描述失败: errno=" + Native.getLastError());
+        }
+        if (libc.ioctl(fd, new NativeLong(UI_DEV_CREATE)) < 0) {
+            throw new RuntimeException("创建 uinput 设备失败: errno=" + Native.getLastError());
+        }
+    }
+
+    private void ioctl(long request, int arg) {
+        if (libc.ioctl(fd, new NativeLong(request), arg) < 0) {
+            throw new RuntimeException("uinput ioctl 失败: errno=" + Native.getLastError());
+        }
+    }
+
+    @Override
+    public boolean isRelativePointer() {
+        return true;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        // 相对设备无法定位到绝对坐标，InputInjector 不会调用此方法
+    }
+
+    @Override
+    public synchronized void mouseMoveBy(int dx, int dy) {
+        out.clear();
+        if (dx != 0) put(EV_REL, REL_X, dx);
+        if (dy != 0) put(EV_REL, REL_Y, dy);
+        flush();
+    }
+
+    @Override
+    public long pointerPosition() {
+        return Long.MIN_VALUE;
+    }
+
+    @Override
+    public void mousePress(int button) {
+        emit(EV_KEY, buttonCode(button), 1);
+    }
+
+    @Override
+    public void mouseRelease(int button) {
+        emit(EV_KEY, buttonCode(button), 0);
+    }
+
+    @Override
+    public void mouseWheel(int steps) {
+        // evdev 中 REL_WHEEL 正值向上，与 Robot 的约定相反
+        emit(EV_REL, REL_WHEEL, -steps);
+    }
+
+    /** 键码经 {@link #toEvdev} 落到固定的 evdev 键位，字符由系统当前的键盘布局决定。 */
+    @Override
+    public boolean isPositionalKeys() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsHorizontalWheel() {
+        return true;
+    }
+
+    @Override
+    public void mouseWheelHorizontal(int steps) {
+        emit(EV_REL, REL_HWHEEL, steps);
+    }
+
+    @Override
+    public void keyPress(int keyCode) {
+        int code = toEvdev(keyCode);
+        if (code != 0) emit(EV_KEY, code, 1);
+    }
+
+    @Override
+    public void keyRelease(int keyCode) {
+        int code = toEvdev(keyCode);
+        if (code != 0) emit(EV_KEY, code, 0);
+    }
+
+    @Override
+    public void close() {
+        libc.ioctl(fd, new NativeLong(UI_DEV_DESTROY));
+        libc.close(fd);
+    }
+
+    private synchronized void emit(int type, int code, int value) {
+        out.clear();
+        put(type, code, value);
+        flush();
+    }
+
+    private void put(int type, int code, int value) {
+        // 时间戳留 0，由内核填写
+        for (int i = 0; i < Native.LONG_SIZE * 2; i++) out.put((byte)0);
+        out.putShort((short)type);
+        out.putShort((short)code);
+        out.putInt(value);
+    }
+
+    private void flush() {
+        if (out.position() == 0) return;
+        put(EV_SYN, SYN_REPORT, 0);
+        libc.write(fd, buf, new NativeLong(out.position()));
+    }
+
+    private static int buttonCode(int button) {
+        switch (button) {
+            case InputInjector.BUTTON_RIGHT: return BTN_RIGHT;
+            case InputInjector.BUTTON_MIDDLE: return BTN_MIDDLE;
+            default: return BTN_LEFT;
+        }
+    }
+
+    /** AWT 键码转换为 Linux input-event-codes，未知返回 0。 */
+    static int toEvdev(int vk) {
+        if (vk >= KeyEvent.VK_F1 && vk <= KeyEvent.VK_F10) return 59 + (vk - KeyEvent.VK_F1);
+        if (vk >= KeyEvent.VK_F13 && vk <= KeyEvent.VK_F24) return 183 + (vk - KeyEvent.VK_F13);
+        if (vk >= KeyEvent.VK_1 && vk <= KeyEvent.VK_9) return 2 + (vk - KeyEvent.VK_1);
+        switch (vk) {
+            case KeyEvent.VK_ESCAPE: return 1;
+            case KeyEvent.VK_0: return 11;
+            case KeyEvent.VK_MINUS: return 12;
+            case KeyEvent.VK_EQUALS: return 13;
+            case KeyEvent.VK_BACK_SPACE: return 14;
+            case KeyEvent.VK_TAB: return 15;
+            case KeyEvent.VK_Q: return 16;
+            case KeyEvent.VK_W: return 17;
+            case KeyEvent.VK_E: return 18;
+            case KeyEvent.VK_R: return 19;
+            case KeyEvent.VK_T: return 20;
+            case KeyEvent.VK_Y: return 21;
+            case KeyEvent.VK_U: return 22;
+            case KeyEvent.VK_I: return 23;
+            case KeyEvent.VK_O: return 24;
+            case KeyEvent.VK_P: return 25;
+            case KeyEvent.VK_OPEN_BRACKET: return 26;
+            case KeyEvent.VK_CLOSE_BRACKET: return 27;
+            case KeyEvent.VK_ENTER: return 28;
+            case KeyEvent.VK_CONTROL: return 29;
+            case KeyEvent.VK_A: return 30;
+            case KeyEvent.VK_S: return 31;
+            case KeyEvent.VK_D: return 32;
+            case KeyEvent.VK_F: return 33;
+            case KeyEvent.VK_G: return 34;
+            case KeyEvent.VK_H: return 35;
+            case KeyEvent.VK_J: return 36;
+            case KeyEvent.VK_K: return 37;
+            case KeyEvent.VK_L: return 38;
+            case KeyEvent.VK_SEMICOLON: return 39;
+            case KeyEvent.VK_QUOTE: return 40;
+            case KeyEvent.VK_BACK_QUOTE: return 41;
+            case KeyEvent.VK_SHIFT: return 42;
+            case KeyEvent.VK_BACK_SLASH: return 43;
+            case KeyEvent.VK_Z: return 44;
+            case KeyEvent.VK_X: return 45;
+            case KeyEvent.VK_C: return 46;
+            case KeyEvent.VK_V: return 47;
+            case KeyEvent.VK_B: return 48;
+            case KeyEvent.VK_N: return 49;
+            case KeyEvent.VK_M: return 50;
+            case KeyEvent.VK_COMMA: return 51;
+            case KeyEvent.VK_PERIOD: return 52;
+            case KeyEvent.VK_SLASH: return 53;
+            case KeyEvent.VK_MULTIPLY: return 55;
+            case KeyEvent.VK_ALT: return 56;
+            case KeyEvent.VK_SPACE: return 57;
+            case KeyEvent.VK_CAPS_LOCK: return 58;
+            case KeyEvent.VK_NUM_LOCK: return 69;
+            case KeyEvent.VK_SCROLL_LOCK: return 70;
+            case KeyEvent.VK_NUMPAD7: return 71;
+            case KeyEvent.VK_NUMPAD8: return 72;
+            case KeyEvent.VK_NUMPAD9: return 73;
+            case KeyEvent.VK_SUBTRACT: return 74;
+            case KeyEvent.VK_NUMPAD4: return 75;
+            case KeyEvent.VK_NUMPAD5: return 76;
+            case KeyEvent.VK_NUMPAD6: return 77;
+            case KeyEvent.VK_ADD: return 78;
+            case KeyEvent.VK_NUMPAD1: return 79;
+            case KeyEvent.VK_NUMPAD2: return 80;
+            case KeyEvent.VK_NUMPAD3: return 81;
+            case KeyEvent.VK_NUMPAD0: return 82;
+            case KeyEvent.VK_DECIMAL: return 83;
+            case KeyEvent.VK_F11: return 87;
+            case KeyEvent.VK_F12: return 88;
+            case KeyEvent.VK_DIVIDE: return 98;
+            case KeyEvent.VK_PRINTSCREEN: return 99;
+            case KeyEvent.VK_ALT_GRAPH: return 100;
+            case KeyEvent.VK_HOME: return 102;
+            case KeyEvent.VK_UP: return 103;
+            case KeyEvent.VK_PAGE_UP: return 104;
+            case KeyEvent.VK_LEFT: return 105;
+            case KeyEvent.VK_RIGHT: return 106;
+            case KeyEvent.VK_END: return 107;
+            case KeyEvent.VK_DOWN: return 108;
+            case KeyEvent.VK_PAGE_DOWN: return 109;
+            case KeyEvent.VK_INSERT: return 110;
+            case KeyEvent.VK_DELETE: return 111;
+            case KeyEvent.VK_PAUSE: return 119;
+            case KeyEvent.VK_META:
+            case KeyEvent.VK_WINDOWS: return 125;
+            case KeyEvent.VK_CONTEXT_MENU: return 127;
+            case KeyEvent.VK_SEPARATOR: return 121;
+            case KeyEvent.VK_LESS: return 86;
+            case KeyEvent.VK_KANA: return 90;
+            case KeyEvent.VK_CONVERT: return 92;
+            case KeyEvent.VK_NONCONVERT: return 94;
+            case KeyEvent.VK_AGAIN: return 129;
+            case KeyEvent.VK_UNDO: return 131;
+            case KeyEvent.VK_COPY: return 133;
+            case KeyEvent.VK_PASTE: return 135;
+            case KeyEvent.VK_FIND: return 136;
+            case KeyEvent.VK_CUT: return 137;
+            case KeyEvent.VK_HELP: return 138;
+            case KeyMap.VK_AUDIO_VOLUME_MUTE: return 113;
+            case KeyMap.VK_AUDIO_VOLUME_DOWN: return 114;
+            case KeyMap.VK_AUDIO_VOLUME_UP: return 115;
+            case KeyMap.VK_MEDIA_TRACK_NEXT: return 163;
+            case KeyMap.VK_MEDIA_PLAY_PAUSE: return 164;
+            case KeyMap.VK_MEDIA_TRACK_PREVIOUS: return 165;
+            case KeyMap.VK_MEDIA_STOP: return 166;
+            case KeyMap.VK_BROWSER_BACK: return 158;
+            case KeyMap.VK_BROWSER_FORWARD: return 159;
+            case KeyMap.VK_BROWSER_HOME: return 172;
+            case KeyMap.VK_BROWSER_REFRESH: return 173;
+            case KeyMap.VK_BROWSER_SEARCH: return 217;
+            default: return 0;
+        }
+    }
+}
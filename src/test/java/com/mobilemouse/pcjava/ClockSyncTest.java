@@ -0,0 +1,59 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClockSyncTest {
+    // 手机时钟比本机快 5 s，单向延迟 3 ms
+    private static final double SKEW_MS = 5000;
+    private static final double ONE_WAY_MS = 3;
+
+    /** 本机 sentNanos 时刻发出、按手机时钟盖的 ts。 */
+    private static double phoneTs(long sentNanos) {
+        return ClockSync.epochMs(sentNanos) + SKEW_MS;
+    }
+
+    @Test
+    void needsSamplesBeforeCorrecting() {
+        ClockSync clock = new ClockSync();
+        long now = System.nanoTime();
+        clock.observe(phoneTs(now), now + (long)(ONE_WAY_MS * 1e6));
+        assertEquals(0, clock.toLocalMs(phoneTs(now)));
+        assertEquals(0, clock.toLocalMs(0));
+    }
+
+    @Test
+    void correctsPhoneClockSkewWithOffsetEstimate() {
+        ClockSync clock = new ClockSync();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            long sent = start + i * 10_000_000L;
+            clock.observe(phoneTs(sent), sent + (long)(ONE_WAY_MS * 1e6));
+        }
+        clock.onRtt((long)(2 * ONE_WAY_MS * 1e6));
+        long sent = start + 200_000_000L;
+        assertEquals(ClockSync.epochMs(sent), clock.toLocalMs(phoneTs(sent)), 0.01);
+    }
+
+    @Test
+    void endToEndLatencyIgnoresPhoneClockSkew() {
+        ClockSync clock = new ClockSync();
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            long sent = start + i * 10_000_000L;
+            clock.observe(phoneTs(sent), sent + (long)(ONE_WAY_MS * 1e6));
+        }
+        clock.onRtt((long)(2 * ONE_WAY_MS * 1e6));
+        MessageStats stats = new MessageStats("c", null);
+        long sent = start + 200_000_000L;
+        long recv = sent + (long)(ONE_WAY_MS * 1e6);
+        stats.onReceived(MessageType.TOUCHMOVE);
+        // 收到后 2 ms 注入完成：端到端约 5 ms，而不是 5 s 的时钟差
+        stats.onCompleted(MessageType.TOUCHMOVE, recv, clock.toLocalMs(phoneTs(sent)), recv + 2_000_000L);
+        long p50 = stats.toJson().getAsJsonObject("types").getAsJsonObject("touchmove")
+                .getAsJsonObject("clientUs").get("p50").getAsLong();
+        assertTrue(p50 >= 4_500 && p50 <= 5_500, "p50=" + p50);
+    }
+}
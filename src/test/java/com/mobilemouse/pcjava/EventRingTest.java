@@ -0,0 +1,195 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventRingTest {
+
+    @Test
+    void roundsCapacityToPowerOfTwo() {
+        assertEquals(8, new EventRing(5).capacity());
+        assertEquals(8, new EventRing(8).capacity());
+    }
+
+    @Test
+    void wrapsAroundAndReportsFull() {
+        EventRing ring = new EventRing(4);
+        InputCommand out = new InputCommand();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 4; i++) {
+                long seq = ring.tryClaim();
+                assertTrue(seq >= 0);
+                ring.slot(seq).code = round * 4 + i;
+                ring.publish(seq);
+            }
+            assertEquals(-1L, ring.tryClaim());
+            assertEquals(4, ring.size());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.poll(out));
+                assertEquals(round * 4 + i, out.code);
+            }
+            assertTrue(ring.isEmpty());
+            assertFalse(ring.poll(out));
+        }
+    }
+
+    @Test
+    void consumerWaitsForUnpublishedSlot() {
+        EventRing ring = new EventRing(4);
+        InputCommand out = new InputCommand();
+        long first = ring.tryClaim();
+        long second = ring.tryClaim();
+        ring.slot(second).code = 2;
+        ring.publish(second);
+        // 序号更小的槽位尚未发布，消费者不能越过它
+        assertFalse(ring.poll(out));
+        ring.slot(first).code = 1;
+        ring.publish(first);
+        assertTrue(ring.poll(out));
+        assertEquals(1, out.code);
+        assertTrue(ring.poll(out));
+        assertEquals(2, out.code);
+    }
+
+    @Test
+    void multipleProducersDeliverEveryCommandOnceInPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        EventRing ring = new EventRing(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long seq;
+                    while ((seq = ring.tryClaim()) < 0) Thread.yield();
+                    InputCommand e = ring.slot(seq);
+                    e.code = id;
+                    e.action = i;
+                    ring.publish(seq);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        int[] next = new int[producers];
+        InputCommand out = new InputCommand();
+        int total = 0;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (total < producers * perProducer && System.nanoTime() < deadline) {
+            if (!ring.poll(out)) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[out.code], out.action);
+            next[out.code]++;
+            total++;
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(producers * perProducer, total);
+        assertTrue(ring.isEmpty());
+    }
+
+    /** 与 Session 相同的申请规则：溢出队列非空时一律进入溢出队列，返回按位取反的序号；都满时返回 MIN_VALUE。 */
+    private static long claim(EventRing ring, EventRing overflow) {
+        if (overflow.size() == 0) {
+            long seq = ring.tryClaim();
+            if (seq >= 0) return seq;
+        }
+        long seq = overflow.tryClaim();
+        return seq >= 0 ? ~seq : Long.MIN_VALUE;
+    }
+
+    @Test
+    void fullRingHandsOffToOverflowUntilItDrains() {
+        EventRing ring = new EventRing(4);
+        EventRing overflow = new EventRing(8);
+        InputCommand out = new InputCommand();
+        for (int i = 0; i < 6; i++) {
+            long seq = claim(ring, overflow);
+            InputCommand e = seq >= 0 ? ring.slot(seq) : overflow.slot(~seq);
+            e.code = i;
+            if (seq >= 0) ring.publish(seq);
+            else overflow.publish(~seq);
+        }
+        assertEquals(4, ring.size());
+        assertEquals(2, overflow.size());
+        // 环形队列腾出空位后，溢出队列仍非空，新命令继续排在溢出队列尾部
+        assertTrue(ring.poll(out));
+        long seq = claim(ring, overflow);
+        assertTrue(seq < 0);
+        overflow.slot(~seq).code = 6;
+        overflow.publish(~seq);
+        List<Integer> order = new ArrayList<>();
+        order.add(out.code);
+        while (ring.poll(out) || overflow.poll(out)) order.add(out.code);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), order);
+        // 两个队列都取空后回到环形队列
+        assertTrue(claim(ring, overflow) >= 0);
+    }
+
+    @Test
+    void overflowHandoffKeepsPerProducerOrderUnderContention() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        EventRing ring = new EventRing(16);
+        EventRing overflow = new EventRing(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    long seq;
+                    while ((seq = claim(ring, overflow)) == Long.MIN_VALUE) Thread.yield();
+                    InputCommand e = seq >= 0 ? ring.slot(seq) : overflow.slot(~seq);
+                    e.code = id;
+                    e.action = i;
+                    if (seq >= 0) ring.publish(seq);
+                    else overflow.publish(~seq);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        int[] next = new int[producers];
+        InputCommand out = new InputCommand();
+        int total = 0;
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (total < producers * perProducer && System.nanoTime() < deadline) {
+            // 与注入线程相同：环形队列取空（含已申请未发布的槽位）后再取溢出队列
+            if (!ring.poll(out) && !(ring.size() == 0 && overflow.poll(out))) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[out.code], out.action);
+            next[out.code]++;
+            total++;
+        }
+        for (Thread t : threads) t.join();
+        assertEquals(producers * perProducer, total);
+        assertTrue(ring.isEmpty());
+        assertTrue(overflow.isEmpty());
+    }
+}
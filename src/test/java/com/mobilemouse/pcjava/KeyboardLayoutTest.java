@@ -0,0 +1,62 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class KeyboardLayoutTest {
+    // Linux input-event-codes
+    private static final int KEY_MINUS = 12;
+    private static final int KEY_Y = 21;
+    private static final int KEY_Z = 44;
+    private static final int KEY_SLASH = 53;
+
+    private static int evdev(KeyboardLayout layout, char c) {
+        return UinputBackend.toEvdev(layout.stroke(c) & KeyboardLayout.VK_MASK);
+    }
+
+    @Test
+    void germanTableUsesCharacterKeyCodesForRobot() {
+        KeyboardLayout de = KeyboardLayout.resolve("de", false);
+        assertEquals(KeyEvent.VK_Z, de.stroke('z'));
+        assertEquals(KeyEvent.VK_MINUS, de.stroke('-'));
+    }
+
+    @Test
+    void germanTableMapsToQwertzPositionsForUinput() {
+        KeyboardLayout de = KeyboardLayout.resolve("de", true);
+        // 德式键盘上 z 在美式 Y 的位置，y 在美式 Z 的位置，- 在美式 / 的位置
+        assertEquals(KEY_Y, evdev(de, 'z'));
+        assertEquals(KEY_Z, evdev(de, 'y'));
+        assertEquals(KeyEvent.VK_Y | KeyboardLayout.SHIFT, de.stroke('Z'));
+        assertEquals(KEY_SLASH, evdev(de, '-'));
+        assertEquals(KeyEvent.VK_SLASH | KeyboardLayout.SHIFT, de.stroke('_'));
+        assertEquals(KeyEvent.VK_7 | KeyboardLayout.SHIFT, de.stroke('/'));
+        // 美式 - 的位置在德式键盘上是 ß，不能用来输入 -
+        assertEquals(-1, de.stroke('ß'));
+        for (char c = 0; c < 256; c++) {
+            if (de.stroke(c) >= 0) assertNotEquals(KEY_MINUS, evdev(de, c), "char " + (int)c);
+        }
+    }
+
+    @Test
+    void unknownLayoutKeepsOnlyWhitespaceForUinput() {
+        KeyboardLayout basic = KeyboardLayout.resolve("fr", true);
+        assertEquals("basic", basic.name);
+        assertEquals(-1, basic.stroke('a'));
+        assertEquals(KeyEvent.VK_SPACE, basic.stroke(' '));
+        assertEquals(KeyEvent.VK_A, KeyboardLayout.resolve("fr", false).stroke('a'));
+    }
+
+    @Test
+    void usAndUkTablesAreTheSameForBothBackends() {
+        for (String name : new String[]{"us", "uk"}) {
+            KeyboardLayout chars = KeyboardLayout.resolve(name, false);
+            KeyboardLayout keys = KeyboardLayout.resolve(name, true);
+            for (char c = 0; c < 256; c++) assertEquals(chars.stroke(c), keys.stroke(c), name + " char " + (int)c);
+        }
+    }
+}
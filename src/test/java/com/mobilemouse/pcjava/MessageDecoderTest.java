@@ -0,0 +1,110 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageDecoderTest {
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final InboundMessage msg = new InboundMessage();
+
+    @Test
+    void decodesMouseMoveWithTs() {
+        assertTrue(decoder.decode("{\"type\":\"mouse_move\",\"dx\":1.5,\"dy\":-2,\"ts\":1700000000123.5}", msg));
+        assertEquals(MessageType.MOUSE_MOVE, msg.type);
+        assertEquals(1.5, msg.dx, 0);
+        assertEquals(-2, msg.dy, 0);
+        assertTrue(msg.hasTs);
+        assertEquals(1700000000123.5, msg.ts, 0);
+    }
+
+    @Test
+    void decodesMouseButton() {
+        assertTrue(decoder.decode("{\"type\":\"mouse_button\",\"button\":\"right\",\"action\":\"down\"}", msg));
+        assertEquals(MessageType.MOUSE_BUTTON, msg.type);
+        assertEquals(InputInjector.BUTTON_RIGHT, msg.button);
+        assertEquals(InputInjector.ACTION_DOWN, msg.action);
+    }
+
+    @Test
+    void leavesTreeTypesAndMalformedInputToSlowPath() {
+        // key_event 需要树解析（嵌套 mod 对象），快速路径返回 false
+        assertFalse(decoder.decode("{\"type\":\"key_event\",\"key\":\"a\",\"action\":\"down\"}", msg));
+        assertEquals(MessageType.KEY_EVENT, msg.type);
+        assertFalse(decoder.decode("{\"type\":\"mouse_move\",\"dx\":1", msg));
+        assertFalse(decoder.decode("{\"type\":\"mouse_move\",\"dx\":1} trailing", msg));
+    }
+
+    @Test
+    void decodesBatchEventsWithOffsets() {
+        InboundMessage[] events = new InboundMessage[4];
+        for (int i = 0; i < events.length; i++) events[i] = new InboundMessage();
+        String batch = "{\"type\":\"batch\",\"ts\":1000,\"events\":["
+                + "{\"type\":\"mouse_move\",\"dx\":1,\"dy\":0,\"dt\":0},"
+                + "{\"type\":\"scroll\",\"dx\":0,\"dy\":2,\"dt\":4.5},"
+                + "{\"type\":\"tap\"}]}";
+        assertTrue(decoder.decode(batch, msg, events));
+        assertEquals(MessageType.BATCH, msg.type);
+        assertEquals(3, decoder.eventCount());
+        assertEquals(MessageType.MOUSE_MOVE, events[0].type);
+        assertEquals(MessageType.SCROLL, events[1].type);
+        assertEquals(2, events[1].dy, 0);
+        assertTrue(events[1].hasDt);
+        assertEquals(4.5, events[1].dt, 0);
+        assertEquals(MessageType.TAP, events[2].type);
+    }
+
+    @Test
+    void rejectsBatchWithoutEventArray() {
+        assertFalse(decoder.decode("{\"type\":\"batch\",\"events\":[]}", msg));
+    }
+
+    @Test
+    void decodesBinaryRecords() {
+        ByteBuffer buf = ByteBuffer.allocate(64);
+        buf.put((byte)BinaryProtocol.VERSION);
+        buf.put((byte)(BinaryProtocol.OP_MOVE_I16 | BinaryProtocol.FLAG_TS)).putLong(1234L).putShort((short)-3).putShort((short)7);
+        buf.put((byte)BinaryProtocol.OP_BUTTON).put((byte)InputInjector.BUTTON_LEFT).put((byte)2);
+        buf.put((byte)BinaryProtocol.OP_KEY).putShort((short)65).put((byte)0).put((byte)(InputCommand.MOD_CTRL | InputCommand.MOD_SHIFT));
+        buf.put((byte)BinaryProtocol.OP_PINCH).putFloat(0.25f);
+        buf.flip();
+
+        assertTrue(BinaryProtocol.begin(buf));
+        assertEquals(BinaryProtocol.RESULT_RECORD, BinaryProtocol.next(buf, msg));
+        assertEquals(MessageType.MOUSE_MOVE, msg.type);
+        assertTrue(msg.hasTs);
+        assertEquals(1234, msg.ts, 0);
+        assertEquals(-3, msg.dx, 0);
+        assertEquals(7, msg.dy, 0);
+
+        assertEquals(BinaryProtocol.RESULT_RECORD, BinaryProtocol.next(buf, msg));
+        assertEquals(MessageType.MOUSE_BUTTON, msg.type);
+        assertEquals(InputInjector.ACTION_CLICK, msg.action);
+        assertFalse(msg.hasTs);
+
+        assertEquals(BinaryProtocol.RESULT_RECORD, BinaryProtocol.next(buf, msg));
+        assertEquals(MessageType.KEY_EVENT, msg.type);
+        assertEquals(65, msg.keyCode);
+        assertEquals(InputInjector.ACTION_DOWN, msg.action);
+        assertEquals(InputCommand.MOD_CTRL | InputCommand.MOD_SHIFT, msg.mods);
+
+        assertEquals(BinaryProtocol.RESULT_RECORD, BinaryProtocol.next(buf, msg));
+        assertEquals(MessageType.PINCH, msg.type);
+        assertEquals(0.25, msg.dscale, 1e-6);
+
+        assertEquals(BinaryProtocol.RESULT_END, BinaryProtocol.next(buf, msg));
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignBinaryFrames() {
+        ByteBuffer truncated = ByteBuffer.wrap(new byte[]{BinaryProtocol.VERSION, BinaryProtocol.OP_MOVE_F32, 0, 0, 0});
+        assertTrue(BinaryProtocol.begin(truncated));
+        assertEquals(BinaryProtocol.RESULT_ERROR, BinaryProtocol.next(truncated, msg));
+
+        assertFalse(BinaryProtocol.begin(ByteBuffer.wrap(new byte[]{9, BinaryProtocol.OP_TOUCHSTART})));
+    }
+}
@@ -0,0 +1,180 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModifierTrackerTest {
+    private static final long LINGER_NANOS = 200_000_000L;
+
+    private RecordingBackend backend;
+    private ModifierTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        backend = new RecordingBackend(1000);
+        tracker = new ModifierTracker(backend, 200);
+    }
+
+    /** 记录的按键序列，形如 "+17"（按下 Ctrl）、"-16"（抬起 Shift）。 */
+    private List<String> keys() {
+        List<String> out = new ArrayList<>();
+        for (RecordingBackend.Record r : backend.records()) {
+            if (r.kind == RecordingBackend.KEY_PRESS) out.add("+" + r.a);
+            else if (r.kind == RecordingBackend.KEY_RELEASE) out.add("-" + r.a);
+        }
+        backend.clear();
+        return out;
+    }
+
+    private static String down(int code) {
+        return "+" + code;
+    }
+
+    private static String up(int code) {
+        return "-" + code;
+    }
+
+    @Test
+    void mapsKeyCodesToModifierBits() {
+        assertEquals(InputCommand.MOD_CTRL, ModifierTracker.bitOf(KeyEvent.VK_CONTROL));
+        assertEquals(InputCommand.MOD_ALT, ModifierTracker.bitOf(KeyEvent.VK_ALT));
+        assertEquals(InputCommand.MOD_SHIFT, ModifierTracker.bitOf(KeyEvent.VK_SHIFT));
+        assertEquals(InputCommand.MOD_META, ModifierTracker.bitOf(KeyEvent.VK_META));
+        assertEquals(0, ModifierTracker.bitOf(KeyEvent.VK_A));
+    }
+
+    @Test
+    void countsHoldersAndPressesOnlyOnStateChange() {
+        tracker.hold(1, InputCommand.MOD_SHIFT, true);
+        tracker.hold(2, InputCommand.MOD_SHIFT, true);
+        tracker.hold(1, InputCommand.MOD_SHIFT, true);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_SHIFT)), keys());
+
+        tracker.hold(1, InputCommand.MOD_SHIFT, false);
+        tracker.hold(1, InputCommand.MOD_SHIFT, false);
+        assertTrue(keys().isEmpty(), "holder 2 still holds Shift");
+
+        tracker.hold(2, InputCommand.MOD_SHIFT, false);
+        assertEquals(Arrays.asList(up(KeyEvent.VK_SHIFT)), keys());
+    }
+
+    @Test
+    void ignoresReleaseFromHolderThatHoldsNothing() {
+        tracker.hold(3, InputCommand.MOD_CTRL, false);
+        assertTrue(keys().isEmpty());
+    }
+
+    @Test
+    void releaseHolderDropsAllItsCounts() {
+        tracker.hold(1, InputCommand.MOD_CTRL | InputCommand.MOD_ALT, true);
+        tracker.hold(1, InputCommand.MOD_CTRL, true);
+        tracker.hold(2, InputCommand.MOD_ALT, true);
+        keys();
+        tracker.releaseHolder(1);
+        assertEquals(Arrays.asList(up(KeyEvent.VK_CONTROL)), keys());
+        tracker.releaseAll();
+        assertEquals(Arrays.asList(up(KeyEvent.VK_ALT)), keys());
+    }
+
+    @Test
+    void transientModifierLingersAcrossFramesUntilIdle() {
+        long now = System.nanoTime();
+        tracker.useTransient(InputCommand.MOD_CTRL, now);
+        tracker.useTransient(InputCommand.MOD_CTRL, now + 50_000_000L);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL)), keys());
+
+        long left = tracker.releaseIdle(now + 100_000_000L);
+        assertEquals(LINGER_NANOS - 50_000_000L, left);
+        assertTrue(keys().isEmpty());
+
+        assertEquals(0, tracker.releaseIdle(now + 50_000_000L + LINGER_NANOS));
+        assertEquals(Arrays.asList(up(KeyEvent.VK_CONTROL)), keys());
+        assertEquals(0, tracker.releaseIdle(now + LINGER_NANOS * 10));
+    }
+
+    @Test
+    void switchingGestureSwapsTransientModifier() {
+        long now = System.nanoTime();
+        tracker.useTransient(InputCommand.MOD_CTRL, now);
+        tracker.useTransient(InputCommand.MOD_SHIFT, now);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL), down(KeyEvent.VK_SHIFT), up(KeyEvent.VK_CONTROL)), keys());
+    }
+
+    @Test
+    void gestureEndKeepsExplicitlyHeldModifier() {
+        tracker.hold(1, InputCommand.MOD_CTRL, true);
+        tracker.useTransient(InputCommand.MOD_CTRL, System.nanoTime());
+        tracker.endTransient();
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL)), keys());
+
+        // 手势期间用户松开 Ctrl：手势仍需要它，直到手势结束才抬起
+        tracker.useTransient(InputCommand.MOD_CTRL, System.nanoTime());
+        tracker.hold(1, InputCommand.MOD_CTRL, false);
+        assertTrue(keys().isEmpty());
+        tracker.endTransient();
+        assertEquals(Arrays.asList(up(KeyEvent.VK_CONTROL)), keys());
+    }
+
+    @Test
+    void keyModifierStaysDownBetweenConsecutiveShortcuts() {
+        long now = System.nanoTime();
+        tracker.holdLingering(1, InputCommand.MOD_CTRL, true, now);
+        tracker.holdLingering(1, InputCommand.MOD_CTRL, false, now);
+        tracker.holdLingering(1, InputCommand.MOD_CTRL, true, now + 50_000_000L);
+        tracker.holdLingering(1, InputCommand.MOD_CTRL, false, now + 50_000_000L);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL)), keys());
+
+        assertEquals(LINGER_NANOS, tracker.releaseIdle(now + 50_000_000L));
+        assertEquals(0, tracker.releaseIdle(now + 50_000_000L + LINGER_NANOS));
+        assertEquals(Arrays.asList(up(KeyEvent.VK_CONTROL)), keys());
+    }
+
+    @Test
+    void keyModifierReleaseFromHolderThatHoldsNothingDoesNotLinger() {
+        long now = System.nanoTime();
+        tracker.hold(2, InputCommand.MOD_SHIFT, true);
+        tracker.holdLingering(1, InputCommand.MOD_SHIFT, false, now);
+        tracker.hold(2, InputCommand.MOD_SHIFT, false);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_SHIFT), up(KeyEvent.VK_SHIFT)), keys());
+        assertEquals(0, tracker.releaseIdle(now));
+    }
+
+    @Test
+    void plainKeyReleasesLingeringShortcutModifierFirst() {
+        AppConfig c = new AppConfig();
+        c.modifierLingerMs = 200;
+        InputInjector injector = new InputInjector(c, backend);
+        injector.setModifiers(1, InputCommand.MOD_CTRL, true);
+        injector.keyCode(1, KeyEvent.VK_C, true);
+        injector.keyCode(1, KeyEvent.VK_C, false);
+        injector.setModifiers(1, InputCommand.MOD_CTRL, false);
+        injector.setModifiers(1, InputCommand.MOD_CTRL, true);
+        injector.keyCode(1, KeyEvent.VK_V, true);
+        injector.keyCode(1, KeyEvent.VK_V, false);
+        injector.setModifiers(1, InputCommand.MOD_CTRL, false);
+        injector.keyCode(1, KeyEvent.VK_A, true);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL), down(KeyEvent.VK_C), up(KeyEvent.VK_C),
+                down(KeyEvent.VK_V), up(KeyEvent.VK_V), up(KeyEvent.VK_CONTROL), down(KeyEvent.VK_A)), keys());
+    }
+
+    @Test
+    void zeroLingerNeverKeepsTransientAlive() {
+        ModifierTracker perFrame = new ModifierTracker(backend, 0);
+        long now = System.nanoTime();
+        perFrame.useTransient(InputCommand.MOD_SHIFT, now);
+        assertEquals(0, perFrame.releaseIdle(now));
+        assertEquals(Arrays.asList(down(KeyEvent.VK_SHIFT), up(KeyEvent.VK_SHIFT)), keys());
+
+        perFrame.holdLingering(1, InputCommand.MOD_CTRL, true, now);
+        perFrame.holdLingering(1, InputCommand.MOD_CTRL, false, now);
+        assertEquals(Arrays.asList(down(KeyEvent.VK_CONTROL), up(KeyEvent.VK_CONTROL)), keys());
+    }
+}
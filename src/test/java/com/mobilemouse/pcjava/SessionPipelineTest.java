@@ -0,0 +1,323 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** 会话仲裁与背压：注入器用 recording 后端，注入结果即后端记录。 */
+class SessionPipelineTest {
+    private RecordingBackend backend;
+    private InjectionPipeline pipeline;
+
+    @AfterEach
+    void shutdown() {
+        if (pipeline != null) pipeline.shutdown();
+    }
+
+    private static AppConfig config() {
+        AppConfig c = new AppConfig();
+        c.backend = "recording";
+        c.injectFps = 1000;
+        c.inputTimingMaxMs = 0;
+        c.modifierLingerMs = 0;
+        return c;
+    }
+
+    private InputInjector injector(AppConfig c) {
+        backend = new RecordingBackend(10_000);
+        return new InputInjector(c, backend);
+    }
+
+    /** 记录后端外加一道闸：文本的第一个按键停在闸前，模拟一条仍在输入的长文本。 */
+    private static final class GatedBackend implements InputBackend {
+        final RecordingBackend target;
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        GatedBackend(RecordingBackend target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean isRelativePointer() {
+            return target.isRelativePointer();
+        }
+
+        @Override
+        public void mouseMove(int x, int y) {
+            target.mouseMove(x, y);
+        }
+
+        @Override
+        public void mouseMoveBy(int dx, int dy) {
+            target.mouseMoveBy(dx, dy);
+        }
+
+        @Override
+        public long pointerPosition() {
+            return target.pointerPosition();
+        }
+
+        @Override
+        public void mousePress(int button) {
+            target.mousePress(button);
+        }
+
+        @Override
+        public void mouseRelease(int button) {
+            target.mouseRelease(button);
+        }
+
+        @Override
+        public void mouseWheel(int steps) {
+            target.mouseWheel(steps);
+        }
+
+        @Override
+        public boolean supportsHorizontalWheel() {
+            return target.supportsHorizontalWheel();
+        }
+
+        @Override
+        public void mouseWheelHorizontal(int steps) {
+            target.mouseWheelHorizontal(steps);
+        }
+
+        @Override
+        public void keyPress(int keyCode) {
+            if (keyCode == KeyEvent.VK_A) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            target.keyPress(keyCode);
+        }
+
+        @Override
+        public void keyRelease(int keyCode) {
+            target.keyRelease(keyCode);
+        }
+    }
+
+    private static Session open(InjectionPipeline p, String label) {
+        return p.openSession(label, new MessageStats(label, null), null);
+    }
+
+    /** 等到流水线取空并注入完毕，返回并清空后端记录。 */
+    private List<RecordingBackend.Record> drainedRecords() throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (pipeline.getQueueDepth() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        Thread.sleep(50);
+        List<RecordingBackend.Record> records = backend.records();
+        backend.clear();
+        return records;
+    }
+
+    /** 同上，只返回记录的种类序列（不含指针移动）。 */
+    private List<Integer> drained() throws InterruptedException {
+        List<Integer> kinds = new ArrayList<>();
+        for (RecordingBackend.Record r : drainedRecords()) {
+            if (r.kind != RecordingBackend.MOVE && r.kind != RecordingBackend.MOVE_BY) kinds.add(r.kind);
+        }
+        return kinds;
+    }
+
+    private static List<Integer> kinds(int... k) {
+        List<Integer> out = new ArrayList<>();
+        for (int x : k) out.add(x);
+        return out;
+    }
+
+    @Test
+    void mergedPolicyInjectsEverySession() throws Exception {
+        pipeline = new InjectionPipeline(injector(config()));
+        Session a = open(pipeline, "a");
+        Session b = open(pipeline, "b");
+        a.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        b.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(kinds(RecordingBackend.PRESS, RecordingBackend.RELEASE,
+                RecordingBackend.PRESS, RecordingBackend.RELEASE), drained());
+    }
+
+    @Test
+    void exclusivePolicyDropsOtherSessionsUntilTakeover() throws Exception {
+        AppConfig c = config();
+        c.arbitration = "exclusive";
+        c.takeoverIdleMs = 60_000;
+        pipeline = new InjectionPipeline(injector(c));
+        Session a = open(pipeline, "a");
+        Session b = open(pipeline, "b");
+
+        a.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_DOWN);
+        assertEquals(kinds(RecordingBackend.PRESS), drained());
+
+        b.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(kinds(), drained());
+
+        // 接管时先释放原控制者仍按住的左键
+        b.requestTakeover();
+        b.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(kinds(RecordingBackend.RELEASE, RecordingBackend.PRESS, RecordingBackend.RELEASE), drained());
+
+        a.mouseButton(InputInjector.BUTTON_RIGHT, InputInjector.ACTION_CLICK);
+        assertEquals(kinds(), drained());
+    }
+
+    @Test
+    void closedSessionReleasesHeldInput() throws Exception {
+        pipeline = new InjectionPipeline(injector(config()));
+        Session a = open(pipeline, "a");
+        a.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_DOWN);
+        a.setModifiers(true, false, false, false, true);
+        drained();
+        a.close();
+        List<Integer> released = drained();
+        assertTrue(released.contains(RecordingBackend.RELEASE));
+        assertTrue(released.contains(RecordingBackend.KEY_RELEASE));
+    }
+
+    @Test
+    void shutdownReleasesHeldAndLingeringInput() throws Exception {
+        AppConfig c = config();
+        c.modifierLingerMs = 60_000;
+        pipeline = new InjectionPipeline(injector(c));
+        Session a = open(pipeline, "a");
+        a.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_DOWN);
+        a.keyCode(KeyEvent.VK_SHIFT, true);
+        a.keyCode(KeyEvent.VK_A, true);
+        // Ctrl+C 抬起后 Ctrl 仍在停留期内
+        a.setModifiers(true, false, false, false, true);
+        a.keyCode(KeyEvent.VK_C, true);
+        a.keyCode(KeyEvent.VK_C, false);
+        a.setModifiers(true, false, false, false, false);
+        drained();
+
+        pipeline.shutdown();
+        List<String> released = new ArrayList<>();
+        for (RecordingBackend.Record r : backend.records()) {
+            if (r.kind == RecordingBackend.RELEASE) released.add("button" + r.a);
+            else if (r.kind == RecordingBackend.KEY_RELEASE) released.add("key" + r.a);
+        }
+        assertTrue(released.contains("button" + InputInjector.BUTTON_LEFT), released.toString());
+        assertTrue(released.contains("key" + KeyEvent.VK_A), released.toString());
+        assertTrue(released.contains("key" + KeyEvent.VK_SHIFT), released.toString());
+        assertTrue(released.contains("key" + KeyEvent.VK_CONTROL), released.toString());
+    }
+
+    @Test
+    void backlogShedsMotionKeepsClicksAndPausesClient() throws Exception {
+        AppConfig c = config();
+        c.sessionQueue = 8;
+        c.sessionOverflow = 2;
+        // 注入器尚未就绪：命令只入队不取出，积压可确定地复现
+        CompletableFuture<InputInjector> ready = new CompletableFuture<>();
+        pipeline = new InjectionPipeline(c, ready);
+        Session s = open(pipeline, "s");
+        List<String> control = Collections.synchronizedList(new ArrayList<>());
+        s.control = control::add;
+
+        for (int i = 0; i < 6; i++) s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(1, control.size());
+        assertTrue(control.get(0).contains("\"state\":\"pause\""));
+
+        // 越过高水位的滚动不入队，累加到旁路
+        for (int i = 0; i < 10; i++) s.scroll(0, 1);
+        assertEquals(10, s.stats.shedCount());
+        assertEquals(6, s.getQueueDepth());
+
+        // 不可丢弃的点击先把旁路的滚动放回队列，再按序进入（环形队列满后进入溢出队列）
+        for (int i = 0; i < 4; i++) s.mouseButton(InputInjector.BUTTON_RIGHT, InputInjector.ACTION_CLICK);
+        assertEquals(11, s.getQueueDepth());
+
+        ready.complete(injector(c));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) expected.addAll(kinds(RecordingBackend.PRESS, RecordingBackend.RELEASE));
+        expected.add(RecordingBackend.WHEEL);
+        for (int i = 0; i < 4; i++) expected.addAll(kinds(RecordingBackend.PRESS, RecordingBackend.RELEASE));
+        assertEquals(expected, drained());
+        assertTrue(control.get(control.size() - 1).contains("\"state\":\"resume\""));
+    }
+
+    @Test
+    void shedScrollIsInjectedAsOneStepWithoutLoss() throws Exception {
+        AppConfig c = config();
+        c.sessionQueue = 8;
+        CompletableFuture<InputInjector> ready = new CompletableFuture<>();
+        pipeline = new InjectionPipeline(c, ready);
+        Session s = open(pipeline, "s");
+        for (int i = 0; i < 6; i++) s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        for (int i = 0; i < 10; i++) s.scroll(0, 1);
+        ready.complete(injector(c));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        int wheel = 0;
+        while (System.nanoTime() < deadline) {
+            wheel = 0;
+            for (RecordingBackend.Record r : backend.records()) {
+                if (r.kind == RecordingBackend.WHEEL) wheel += r.a;
+            }
+            if (wheel == 10) break;
+            Thread.sleep(5);
+        }
+        assertEquals(10, wheel);
+    }
+
+    @Test
+    void overflowBeyondCapClosesConnection() {
+        AppConfig c = config();
+        c.sessionQueue = 8;
+        c.sessionOverflow = 2;
+        pipeline = new InjectionPipeline(c, new CompletableFuture<>());
+        Session s = open(pipeline, "s");
+        AtomicInteger closed = new AtomicInteger();
+        s.onOverflow = closed::incrementAndGet;
+        // 环形队列 8 + 溢出队列 16
+        for (int i = 0; i < 24; i++) s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(0, closed.get());
+        assertEquals(24, s.getQueueDepth());
+        s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        s.mouseButton(InputInjector.BUTTON_LEFT, InputInjector.ACTION_CLICK);
+        assertEquals(1, closed.get());
+        assertEquals(24, s.getQueueDepth());
+    }
+
+    @Test
+    void gestureScrollWaitsForTextInProgress() throws Exception {
+        AppConfig c = config();
+        c.textPasteMinChars = 100;
+        backend = new RecordingBackend(10_000);
+        GatedBackend gated = new GatedBackend(backend);
+        pipeline = new InjectionPipeline(new InputInjector(c, gated));
+        Session s = open(pipeline, "s");
+
+        s.typeText("ab");
+        s.modifiedScroll(InputCommand.MOD_CTRL, 0, 1);
+        s.endGestureModifiers();
+        // 文本停在第一个按键：手势的 Ctrl 不能在此时按下
+        for (RecordingBackend.Record r : drainedRecords()) {
+            assertFalse(r.kind == RecordingBackend.KEY_PRESS && r.a == KeyEvent.VK_CONTROL, "Ctrl pressed during text");
+        }
+
+        gated.gate.countDown();
+        List<String> keys = new ArrayList<>();
+        for (RecordingBackend.Record r : drainedRecords()) {
+            if (r.kind == RecordingBackend.KEY_PRESS) keys.add("+" + r.a);
+            else if (r.kind == RecordingBackend.KEY_RELEASE) keys.add("-" + r.a);
+            else if (r.kind == RecordingBackend.WHEEL) keys.add("wheel");
+        }
+        assertEquals(Arrays.asList("+" + KeyEvent.VK_A, "-" + KeyEvent.VK_A, "+" + KeyEvent.VK_B, "-" + KeyEvent.VK_B,
+                "+" + KeyEvent.VK_CONTROL, "wheel", "-" + KeyEvent.VK_CONTROL), keys);
+    }
+}
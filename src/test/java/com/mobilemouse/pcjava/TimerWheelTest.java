@@ -0,0 +1,99 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+    private final TimerWheel wheel = new TimerWheel("test-timer");
+
+    @AfterEach
+    void shutdown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void runsTasksInDeadlineOrderNoEarlierThanRequested() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] firedAt = new long[3];
+        int[] delays = {60, 20, 40};
+        for (int i = 0; i < delays.length; i++) {
+            int id = i;
+            wheel.schedule(() -> {
+                firedAt[id] = System.nanoTime();
+                order.add(id);
+                done.countDown();
+            }, delays[i], TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 0), order);
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue(firedAt[i] - start >= TimeUnit.MILLISECONDS.toNanos(delays[i]), "task " + i + " fired early");
+        }
+    }
+
+    @Test
+    void delaysLongerThanOneRevolutionWaitForTheirRound() throws Exception {
+        // 512 个 1 ms 槽位：700 ms 的任务在第一圈经过其槽位时不能执行
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] firedAt = new long[1];
+        wheel.schedule(() -> {
+            firedAt[0] = System.nanoTime();
+            done.countDown();
+        }, 700, TimeUnit.MILLISECONDS);
+        // 期间的短任务让时间轮逐 tick 走过那个槽位
+        for (int i = 1; i < 10; i++) wheel.schedule(() -> { }, i * 50, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(3, TimeUnit.SECONDS));
+        assertTrue(firedAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(700));
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        TimerWheel.Timeout t = wheel.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        t.cancel();
+        assertTrue(t.isCancelled());
+        CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(later::countDown, 60, TimeUnit.MILLISECONDS);
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void fixedRateRepeatsUntilCancelled() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch five = new CountDownLatch(5);
+        TimerWheel.Timeout t = wheel.scheduleAtFixedRate(() -> {
+            runs.incrementAndGet();
+            five.countDown();
+        }, 10, 10, TimeUnit.MILLISECONDS);
+        assertTrue(five.await(2, TimeUnit.SECONDS));
+        t.cancel();
+        int after = runs.get();
+        Thread.sleep(60);
+        // 取消时可能正好有一次在执行
+        assertTrue(runs.get() <= after + 1);
+    }
+
+    @Test
+    void taskFailureDoesNotStopTheWheel() throws Exception {
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 5, TimeUnit.MILLISECONDS);
+        CountDownLatch done = new CountDownLatch(1);
+        wheel.schedule(done::countDown, 20, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,113 @@
+package com.mobilemouse.pcjava;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** UDP 侧通道：令牌按槽位下标查找，伪造或已注销的令牌不被接受。 */
+class UdpChannelTest {
+    private InjectionPipeline pipeline;
+    private UdpChannel udp;
+    private DatagramChannel client;
+    private final BlockingQueue<Session> received = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void shutdown() throws Exception {
+        if (client != null) client.close();
+        if (udp != null) udp.close();
+        if (pipeline != null) pipeline.shutdown();
+    }
+
+    private void start() throws Exception {
+        int port;
+        try (DatagramSocket probe = new DatagramSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        AppConfig c = new AppConfig();
+        c.backend = "recording";
+        pipeline = new InjectionPipeline(c, new CompletableFuture<>());
+        udp = new UdpChannel(port, (s, m) -> received.add(s));
+        udp.start();
+        client = DatagramChannel.open();
+        client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    private Session open(String label) {
+        return pipeline.openSession(label, new MessageStats(label, null), null);
+    }
+
+    /** 一个只含一条 MOVE_I16 的数据报。 */
+    private void send(long token, int seq) throws Exception {
+        ByteBuffer b = ByteBuffer.allocate(1 + 8 + 4 + 5);
+        b.put((byte)BinaryProtocol.VERSION).putLong(token).putInt(seq);
+        b.put((byte)BinaryProtocol.OP_MOVE_I16).putShort((short)1).putShort((short)0);
+        b.flip();
+        client.write(b);
+    }
+
+    private Session next() throws InterruptedException {
+        return received.poll(2, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void routesEachTokenToItsSessionAcrossTableGrowth() throws Exception {
+        start();
+        InetAddress local = InetAddress.getLoopbackAddress();
+        List<Session> sessions = new ArrayList<>();
+        List<Long> tokens = new ArrayList<>();
+        // 超过初始 16 个槽位，触发扩容
+        for (int i = 0; i < 40; i++) {
+            Session s = open("s" + i);
+            sessions.add(s);
+            tokens.add(udp.register(s, local));
+        }
+        for (int i = 0; i < 40; i++) {
+            send(tokens.get(i), 1);
+            assertSame(sessions.get(i), next());
+        }
+    }
+
+    @Test
+    void rejectsForgedAndUnregisteredTokens() throws Exception {
+        start();
+        InetAddress local = InetAddress.getLoopbackAddress();
+        Session a = open("a");
+        Session b = open("b");
+        long ta = udp.register(a, local);
+        long tb = udp.register(b, local);
+        // 同一槽位、随机部分不同的令牌
+        send(ta ^ (1L << 40), 1);
+        send(ta, 1);
+        assertSame(a, next());
+
+        udp.unregister(ta);
+        send(ta, 2);
+        send(tb, 1);
+        assertSame(b, next());
+
+        // 槽位被复用时令牌不同，旧令牌仍然无效
+        Session c = open("c");
+        long tc = udp.register(c, local);
+        assertEquals(ta & 0xFFFF, tc & 0xFFFF);
+        assertNotEquals(ta, tc);
+        send(ta, 3);
+        send(tc, 1);
+        assertSame(c, next());
+        assertEquals(0, received.size());
+    }
+}